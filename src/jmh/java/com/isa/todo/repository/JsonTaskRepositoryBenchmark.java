@@ -0,0 +1,116 @@
+package com.isa.todo.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.isa.todo.model.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The persistence paths of {@link JsonTaskRepository}: appending adds and removes to the log, and loading a
+ * snapshot at startup, for both snapshot formats.
+ * <p>
+ * Mutations run as single-shot batches of {@value #BATCH} operations against a repository that is recreated
+ * before every iteration, so each batch starts from the same dataset and log state.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class JsonTaskRepositoryBenchmark {
+    static final int BATCH = 1_000;
+
+    @Param({"10000", "100000", "1000000"})
+    int size;
+
+    @Param({"JSON", "BINARY"})
+    SnapshotFormat format;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private Path directory;
+    private File snapshotFile;
+    private List<Task> dataset;
+    private List<Task> extraTasks;
+    private JsonTaskRepository repository;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void createSnapshot() throws IOException {
+        directory = Files.createTempDirectory("task-benchmark");
+        snapshotFile = directory.resolve(format == SnapshotFormat.BINARY ? "tasks.bin" : "tasks.json").toFile();
+        dataset = TaskDatasets.generate(size, TaskDatasets.SEED);
+        extraTasks = TaskDatasets.generate(BATCH, TaskDatasets.SEED + 1);
+        if (format == SnapshotFormat.BINARY) {
+            BinaryTaskFile.write(snapshotFile, dataset, dataset.size());
+        } else {
+            new JsonTaskFile(objectMapper).write(snapshotFile, dataset, dataset.size());
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void openRepository() throws IOException {
+        Files.deleteIfExists(Path.of(snapshotFile.getPath() + ".log"));
+        repository = new JsonTaskRepository(objectMapper, snapshotFile, format, Integer.MAX_VALUE);
+        next = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeRepository() {
+        repository.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteSnapshot() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = BATCH)
+    @Measurement(iterations = 10, batchSize = BATCH)
+    public void addTask() {
+        repository.addTask(extraTasks.get(next++));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = BATCH)
+    @Measurement(iterations = 10, batchSize = BATCH)
+    public void removeTaskById() {
+        repository.removeTaskById(dataset.get(next++).getId());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public JsonTaskRepository loadTasksFromFile() {
+        JsonTaskRepository loaded = new JsonTaskRepository(objectMapper, snapshotFile, format, Integer.MAX_VALUE);
+        loaded.close();
+        return loaded;
+    }
+}
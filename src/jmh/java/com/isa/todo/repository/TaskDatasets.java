@@ -0,0 +1,53 @@
+package com.isa.todo.repository;
+
+import com.isa.todo.model.Category;
+import com.isa.todo.model.Task;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates reproducible task lists for the benchmarks: the same size and seed always give the same tasks,
+ * ids aside, so repository implementations are compared on identical data.
+ */
+public final class TaskDatasets {
+    public static final long SEED = 42;
+    private static final String[] DESCRIPTIONS = {"Grocery shopping", "Preparing a report", "Booking tickets",
+            "Paying bills", "Team meeting", "Car service", "Dentist appointment", "Cleaning the garage"};
+    private static final Category[] CATEGORIES = Category.values();
+
+    private TaskDatasets() {
+    }
+
+    /**
+     * @return {@code size} tasks due within the next 90 days, with priorities 1 to 5 and about a thousand
+     * distinct descriptions
+     */
+    public static List<Task> generate(int size, long seed) {
+        Random random = new Random(seed);
+        LocalDate today = LocalDate.now();
+        List<Task> tasks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tasks.add(new Task(DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)] + " " + random.nextInt(128),
+                    CATEGORIES[random.nextInt(CATEGORIES.length)], 1 + random.nextInt(5),
+                    today.plusDays(random.nextInt(90))));
+        }
+        return tasks;
+    }
+
+    /**
+     * Builds the repository implementation named by a benchmark parameter.
+     */
+    public static TaskRepository repository(String type, List<Task> tasks) {
+        switch (type) {
+            case "in-memory":
+                return new InMemoryTaskRepository(tasks);
+            case "columnar":
+                return new ColumnarTaskRepository(tasks);
+            default:
+                throw new IllegalArgumentException("Unknown repository type: " + type);
+        }
+    }
+}
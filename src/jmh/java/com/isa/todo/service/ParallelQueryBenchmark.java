@@ -0,0 +1,88 @@
+package com.isa.todo.service;
+
+import com.isa.todo.metrics.Metrics;
+import com.isa.todo.model.Category;
+import com.isa.todo.model.Task;
+import com.isa.todo.repository.TaskDatasets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TaskService} queries against the in-memory repository on the calling thread and in parallel mode,
+ * across dataset sizes around {@code todo.query.parallel-threshold}, to find where splitting starts to pay.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ParallelQueryBenchmark {
+
+    @Param({"1000", "10000", "50000", "100000", "1000000"})
+    int size;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    private QueryExecutor queryExecutor;
+    private TaskService taskService;
+
+    @Setup
+    public void setUp() {
+        List<Task> tasks = TaskDatasets.generate(size, TaskDatasets.SEED);
+        queryExecutor = parallel ? new QueryExecutor(true, 0, 0) : QueryExecutor.sequential();
+        taskService = new TaskService(TaskDatasets.repository("in-memory", tasks), new Metrics(),
+                QueryCache.disabled(), queryExecutor);
+    }
+
+    @TearDown
+    public void tearDown() {
+        queryExecutor.close();
+    }
+
+    @Benchmark
+    public List<Task> findTasksByDescriptionContainsShortKeyword() {
+        return taskService.findTasksByDescriptionContains("re");
+    }
+
+    @Benchmark
+    public List<Task> findTasksByDescriptionContains() {
+        return taskService.findTasksByDescriptionContains("report 1");
+    }
+
+    @Benchmark
+    public List<Task> findTasksByCategory() {
+        return taskService.findTasksByCategory(Category.HOME);
+    }
+
+    @Benchmark
+    public List<Task> sortTasksByDate() {
+        return taskService.sortTasksByDate();
+    }
+
+    @Benchmark
+    public Map<Category, List<Task>> divideTasksByCategory() {
+        return taskService.divideTasksByCategory();
+    }
+
+    @Benchmark
+    public Map<Category, Optional<Task>> findHighestPriorityTaskForEachCategory() {
+        return taskService.findHighestPriorityTaskForEachCategory();
+    }
+}
@@ -0,0 +1,159 @@
+package com.isa.todo.service;
+
+import com.isa.todo.metrics.Metrics;
+import com.isa.todo.model.Category;
+import com.isa.todo.model.Task;
+import com.isa.todo.repository.TaskDatasets;
+import com.isa.todo.repository.TaskOrder;
+import com.isa.todo.repository.TaskPage;
+import com.isa.todo.repository.TaskQuery;
+import com.isa.todo.repository.TaskRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every {@link TaskService} query against each repository implementation and dataset size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class TaskServiceBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    int size;
+
+    @Param({"in-memory", "columnar"})
+    String repository;
+
+    private TaskService taskService;
+    private String existingId;
+    private String middleCursor;
+    private TaskQuery keywordQuery;
+    private TaskQuery combinedQuery;
+
+    @Setup
+    public void setUp() {
+        List<Task> tasks = TaskDatasets.generate(size, TaskDatasets.SEED);
+        TaskRepository taskRepository = TaskDatasets.repository(repository, tasks);
+        taskService = new TaskService(taskRepository, new Metrics());
+        existingId = tasks.get(size / 2).getId();
+        middleCursor = taskService.getAllTasks(null, size / 2).getNextCursor();
+        // Long enough for the trigram index of the in-memory snapshot.
+        keywordQuery = new TaskQuery(null, null, null, null, null, "report 1", null, 50);
+        LocalDate today = LocalDate.now();
+        combinedQuery = new TaskQuery(Category.HOME, 1, 2, today, today.plusDays(7), "report", TaskOrder.URGENCY, 50);
+    }
+
+    @Benchmark
+    public List<Task> getAllTasks() {
+        return taskService.getAllTasks();
+    }
+
+    @Benchmark
+    public TaskPage getAllTasksFirstPage() {
+        return taskService.getAllTasks(null, 50);
+    }
+
+    @Benchmark
+    public TaskPage getAllTasksMiddlePage() {
+        return taskService.getAllTasks(middleCursor, 50);
+    }
+
+    @Benchmark
+    public Task getTaskById() {
+        return taskService.getTaskById(existingId);
+    }
+
+    @Benchmark
+    public List<Task> findTasksWithPriority1() {
+        return taskService.findTasksWithPriority1();
+    }
+
+    @Benchmark
+    public List<Task> findTasksForNextDay() {
+        return taskService.findTasksForNextDay();
+    }
+
+    @Benchmark
+    public List<Task> sortTasksByPriorityDescending() {
+        return taskService.sortTasksByPriorityDescending();
+    }
+
+    @Benchmark
+    public TaskPage sortTasksByPriorityDescendingFirstPage() {
+        return taskService.sortTasksByPriorityDescending(null, 50);
+    }
+
+    @Benchmark
+    public List<Task> sortTasksByDate() {
+        return taskService.sortTasksByDate();
+    }
+
+    @Benchmark
+    public TaskPage sortTasksByDateFirstPage() {
+        return taskService.sortTasksByDate(null, 50);
+    }
+
+    @Benchmark
+    public List<Task> findTasksByCategory() {
+        return taskService.findTasksByCategory(Category.HOME);
+    }
+
+    @Benchmark
+    public List<Task> findTasksByDescriptionContains() {
+        return taskService.findTasksByDescriptionContains("report 1");
+    }
+
+    @Benchmark
+    public List<Task> searchTasksByKeyword() {
+        return taskService.searchTasks(keywordQuery);
+    }
+
+    @Benchmark
+    public List<Task> searchTasksByAllCriteria() {
+        return taskService.searchTasks(combinedQuery);
+    }
+
+    @Benchmark
+    public Optional<Task> findMostUrgentTask() {
+        return taskService.findMostUrgentTask();
+    }
+
+    @Benchmark
+    public List<Task> findMostUrgentTasks() {
+        return taskService.findMostUrgentTasks(10);
+    }
+
+    @Benchmark
+    public Map<Category, List<Task>> divideTasksByCategory() {
+        return taskService.divideTasksByCategory();
+    }
+
+    @Benchmark
+    public Map<Integer, List<Task>> divideTasksByPriority() {
+        return taskService.divideTasksByPriority();
+    }
+
+    @Benchmark
+    public Map<Category, Optional<Task>> findHighestPriorityTaskForEachCategory() {
+        return taskService.findHighestPriorityTaskForEachCategory();
+    }
+}
@@ -0,0 +1,63 @@
+package com.isa.todo.controller;
+
+import com.isa.todo.metrics.LatencyHistogram;
+import com.isa.todo.metrics.Metrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+
+/**
+ * Exposes latencies and gauges in the Prometheus text format. Only loopback clients are served unless
+ * {@code todo.metrics.local-only} is false.
+ */
+@RestController
+public class MetricsController {
+    private static final double[] QUANTILES = {0.5, 0.99};
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final Metrics metrics;
+    private final boolean localOnly;
+
+    @Autowired
+    public MetricsController(Metrics metrics, @Value("${todo.metrics.local-only:true}") boolean localOnly) {
+        this.metrics = metrics;
+        this.localOnly = localOnly;
+    }
+
+    @GetMapping(value = "/metrics", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> metrics(HttpServletRequest request) throws UnknownHostException {
+        if (localOnly && !InetAddress.getByName(request.getRemoteAddr()).isLoopbackAddress()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        StringBuilder out = new StringBuilder();
+        out.append("# TYPE todo_latency_seconds summary\n");
+        for (Map.Entry<String, LatencyHistogram.Snapshot> entry : metrics.timerSnapshots().entrySet()) {
+            String labels = "operation=\"" + entry.getKey().replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+            LatencyHistogram.Snapshot snapshot = entry.getValue();
+            for (double quantile : QUANTILES) {
+                sample(out, "todo_latency_seconds", labels + ",quantile=\"" + quantile + "\"",
+                        snapshot.percentileNanos(quantile) / NANOS_PER_SECOND);
+            }
+            sample(out, "todo_latency_seconds_max", labels, snapshot.getMaxNanos() / NANOS_PER_SECOND);
+            sample(out, "todo_latency_seconds_sum", labels, snapshot.getSumNanos() / NANOS_PER_SECOND);
+            out.append("todo_latency_seconds_count{").append(labels).append("} ").append(snapshot.getCount()).append('\n');
+        }
+        metrics.gaugeValues().forEach((name, value) ->
+                out.append("# TYPE todo_").append(name).append(" gauge\n")
+                        .append("todo_").append(name).append(' ').append(value).append('\n'));
+        return ResponseEntity.ok(out.toString());
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+}
@@ -0,0 +1,33 @@
+package com.isa.todo.controller;
+
+import com.isa.todo.repository.ChangeQueueFullException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Turns repository errors that the status annotation of the exception cannot describe fully into responses,
+ * for both the pages and the JSON API.
+ */
+@ControllerAdvice
+public class RepositoryExceptionHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepositoryExceptionHandler.class);
+    private static final int RETRY_AFTER_SECONDS = 1;
+
+    /**
+     * An asynchronous change found the I/O queue full. The client can simply send it again once the queue
+     * has drained, so answer 503 with {@code Retry-After} rather than a server error.
+     */
+    @ExceptionHandler(ChangeQueueFullException.class)
+    public void changeQueueFull(ChangeQueueFullException e, HttpServletResponse response) throws IOException {
+        LOGGER.warn("Rejected a task change: {}", e.getMessage());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(RETRY_AFTER_SECONDS));
+        response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Too many pending task changes; retry later");
+    }
+}
@@ -0,0 +1,230 @@
+package com.isa.todo.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.isa.todo.model.Category;
+import com.isa.todo.model.Task;
+import com.isa.todo.repository.TaskOrder;
+import com.isa.todo.repository.TaskQuery;
+import com.isa.todo.service.TaskImportResult;
+import com.isa.todo.service.TaskImporter;
+import com.isa.todo.service.TaskService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * JSON counterpart of {@link TaskController}. Task lists are written straight from a repository snapshot as
+ * they are read, never collected first: as a JSON array by default, or one task per line when the client
+ * accepts {@value #NDJSON}.
+ */
+@RestController
+@RequestMapping("/api/tasks")
+public class TaskApiController {
+    private static final String NDJSON = "application/x-ndjson";
+    private static final int MAX_LIMIT = 500;
+
+    private final TaskService taskService;
+    private final TaskImporter taskImporter;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter taskWriter;
+
+    @Autowired
+    public TaskApiController(TaskService taskService, TaskImporter taskImporter, ObjectMapper objectMapper) {
+        this.taskService = taskService;
+        this.taskImporter = taskImporter;
+        this.objectMapper = objectMapper;
+        this.taskWriter = objectMapper.writerFor(Task.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    @GetMapping
+    public void getAllTasks(@RequestParam(value = "order", defaultValue = "INSERTION") TaskOrder order,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeTasks(taskService.streamTasks(order), request, response);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Task> getTaskById(@PathVariable("id") String id) {
+        return ResponseEntity.of(Optional.ofNullable(taskService.getTaskById(id)));
+    }
+
+    /**
+     * Creates a task. A task whose id is already taken is refused with 409 instead of replacing the existing
+     * one, which would otherwise be reported as created.
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<Task>> addTask(@Valid @RequestBody Task task) {
+        if (!TaskService.isValidId(task.getId())) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        if (taskService.getTaskById(task.getId()) != null) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.CONFLICT).build());
+        }
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(task.getId()).toUri();
+        return taskService.addTaskAsync(task).thenApply(done -> ResponseEntity.created(location).body(task));
+    }
+
+    @DeleteMapping("/{id}")
+    public CompletableFuture<ResponseEntity<Void>> deleteTask(@PathVariable("id") String id) {
+        if (taskService.getTaskById(id) == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
+        }
+        return taskService.removeTaskByIdAsync(id).thenApply(done -> ResponseEntity.noContent().build());
+    }
+
+    /**
+     * Reads the body straight from the request stream, either a JSON array of tasks or one task per line.
+     */
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON})
+    public TaskImportResult importTasks(InputStream body) {
+        return taskImporter.importTasks(body);
+    }
+
+    @GetMapping("/category/{category}")
+    public void getTasksByCategory(@PathVariable("category") Category category,
+                                   HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeTasks(taskService.streamTasksByCategory(category), request, response);
+    }
+
+    @GetMapping("/priority/{priority}")
+    public void getTasksByPriority(@PathVariable("priority") int priority,
+                                   HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeTasks(taskService.streamTasksByPriority(priority), request, response);
+    }
+
+    @GetMapping("/due")
+    public void getTasksByDueDate(@RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                  @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                  HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeTasks(taskService.streamTasksByDueDateBetween(from, to), request, response);
+    }
+
+    @GetMapping("/description")
+    public void getTasksByDescriptionContains(@RequestParam("search") String keyword,
+                                              HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeTasks(taskService.streamTasksByDescriptionContains(keyword), request, response);
+    }
+
+    @GetMapping("/search")
+    public List<Task> searchTasks(@RequestParam(value = "category", required = false) Category category,
+                                  @RequestParam(value = "minPriority", required = false) Integer minPriority,
+                                  @RequestParam(value = "maxPriority", required = false) Integer maxPriority,
+                                  @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                  @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                  @RequestParam(value = "search", required = false) String keyword,
+                                  @RequestParam(value = "order", defaultValue = "INSERTION") TaskOrder order,
+                                  @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        return taskService.searchTasks(new TaskQuery(category, minPriority, maxPriority, from, to, keyword, order,
+                Math.max(1, Math.min(limit, MAX_LIMIT))));
+    }
+
+    @GetMapping("/most-urgent")
+    public List<Task> getMostUrgentTasks(@RequestParam(value = "limit", defaultValue = "1") int limit) {
+        return taskService.findMostUrgentTasks(Math.max(1, Math.min(limit, MAX_LIMIT)));
+    }
+
+    @GetMapping("/by-category")
+    public void getTasksDividedByCategory(HttpServletResponse response) throws IOException {
+        Map<Category, Stream<Task>> groups = taskService.streamTasksDividedByCategory();
+        try (JsonGenerator generator = startJson(response, MediaType.APPLICATION_JSON_VALUE)) {
+            generator.writeStartObject();
+            for (Map.Entry<Category, Stream<Task>> group : groups.entrySet()) {
+                Iterator<Task> tasks = group.getValue().iterator();
+                if (tasks.hasNext()) {
+                    generator.writeFieldName(group.getKey().name());
+                    writeArray(generator, tasks);
+                }
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Walks the tasks once in priority order and starts a new array whenever the priority changes.
+     */
+    @GetMapping("/by-priority")
+    public void getTasksDividedByPriority(HttpServletResponse response) throws IOException {
+        Iterator<Task> tasks = taskService.streamTasks(TaskOrder.PRIORITY).iterator();
+        try (JsonGenerator generator = startJson(response, MediaType.APPLICATION_JSON_VALUE)) {
+            generator.writeStartObject();
+            Integer priority = null;
+            while (tasks.hasNext()) {
+                Task task = tasks.next();
+                if (priority == null || task.getPriority() != priority) {
+                    if (priority != null) {
+                        generator.writeEndArray();
+                    }
+                    priority = task.getPriority();
+                    generator.writeFieldName(priority.toString());
+                    generator.writeStartArray();
+                }
+                taskWriter.writeValue(generator, task);
+            }
+            if (priority != null) {
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    @GetMapping("/highest-priority")
+    public Map<Category, Optional<Task>> findHighestPriorityTaskForEachCategory() {
+        return taskService.findHighestPriorityTaskForEachCategory();
+    }
+
+    private void writeTasks(Stream<Task> tasks, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        boolean ndjson = accept != null && accept.contains(NDJSON);
+        try (JsonGenerator generator = startJson(response, ndjson ? NDJSON : MediaType.APPLICATION_JSON_VALUE)) {
+            if (ndjson) {
+                generator.setRootValueSeparator(null);
+                Iterator<Task> iterator = tasks.iterator();
+                while (iterator.hasNext()) {
+                    taskWriter.writeValue(generator, iterator.next());
+                    generator.writeRaw('\n');
+                }
+            } else {
+                writeArray(generator, tasks.iterator());
+            }
+        }
+    }
+
+    private void writeArray(JsonGenerator generator, Iterator<Task> tasks) throws IOException {
+        generator.writeStartArray();
+        while (tasks.hasNext()) {
+            taskWriter.writeValue(generator, tasks.next());
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * The response is committed with the first buffer written, so an error after that cuts the body short
+     * instead of turning into an error status.
+     */
+    private JsonGenerator startJson(HttpServletResponse response, String contentType) throws IOException {
+        response.setContentType(contentType);
+        response.setCharacterEncoding("UTF-8");
+        return objectMapper.getFactory().createGenerator(response.getOutputStream());
+    }
+}
@@ -0,0 +1,216 @@
+package com.isa.todo.controller;
+
+import com.isa.todo.repository.TaskChange;
+import com.isa.todo.service.TaskService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Streams repository changes as Server-Sent Events, so clients can apply deltas instead of reloading the
+ * task list after every change. Each change is an {@code added} or {@code removed} event with the
+ * {@link TaskChange} as data, and the last event of every version carries the id
+ * {@code <instance>-<version>}.
+ * <p>
+ * A client resumes by sending that id back as {@code Last-Event-ID}, which browsers do on their own when
+ * they reconnect, or as the {@code since} parameter, which also takes the ETag of a task list page. If the
+ * changes after it are no longer available, for example after a restart, the stream starts with a
+ * {@code reset} event carrying the current version, and the client has to reload the list.
+ * <p>
+ * Every connection has its own queue, drained by a small pool of sender threads, so a slow client never
+ * holds up writers. A client more than {@value #MAX_QUEUED_CHANGES} changes behind is disconnected once its
+ * queue is sent, and resumes from there.
+ */
+@RestController
+@RequestMapping("/api/tasks/changes")
+public class TaskChangeController {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskChangeController.class);
+    private static final int MAX_QUEUED_CHANGES = 20_000;
+    private static final int SENDER_THREADS = 4;
+
+    private final TaskService taskService;
+    private final long timeoutMs;
+    private final ExecutorService senders;
+
+    @Autowired
+    public TaskChangeController(TaskService taskService, @Value("${todo.change-feed.timeout-ms:1800000}") long timeoutMs) {
+        this.taskService = taskService;
+        this.timeoutMs = timeoutMs;
+        this.senders = Executors.newFixedThreadPool(SENDER_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "task-change-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Without an id to resume from, the stream starts with the changes after the current version.
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                    @RequestParam(value = "since", required = false) String since) {
+        String resumeFrom = lastEventId != null ? lastEventId : since;
+        long fromVersion = resumeFrom == null ? taskService.getVersion() : parseVersion(resumeFrom);
+        Subscriber subscriber = new Subscriber(new SseEmitter(timeoutMs));
+        long startVersion = taskService.subscribeToChanges(fromVersion, subscriber);
+        if (startVersion != fromVersion) {
+            subscriber.resetTo(startVersion);
+        }
+        subscriber.start();
+        return subscriber.emitter;
+    }
+
+    @PreDestroy
+    public void close() {
+        senders.shutdownNow();
+    }
+
+    private String eventId(long version) {
+        return taskService.getInstanceTag() + "-" + version;
+    }
+
+    /**
+     * @return the version in an event id or ETag of this instance, or -1 to make the client start over
+     */
+    private long parseVersion(String id) {
+        String value = id.startsWith("W/") ? id.substring(2) : id;
+        value = value.replace("\"", "");
+        int separator = value.lastIndexOf('-');
+        if (separator >= 0) {
+            if (!value.substring(0, separator).equals(taskService.getInstanceTag())) {
+                return -1;
+            }
+            value = value.substring(separator + 1);
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private final class Subscriber implements Consumer<List<TaskChange>> {
+        final SseEmitter emitter;
+        private final Queue<List<TaskChange>> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        // Held by whoever is sending; starts held so that nothing is sent before start().
+        private final AtomicBoolean sending = new AtomicBoolean(true);
+        private volatile boolean overflowed;
+        private volatile boolean closed;
+        private long resetVersion = -1;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+            emitter.onCompletion(this::close);
+            emitter.onError(error -> close());
+        }
+
+        /**
+         * Called on the writing thread with the repository's write lock held.
+         */
+        @Override
+        public void accept(List<TaskChange> changes) {
+            if (closed || overflowed) {
+                return;
+            }
+            if (queued.addAndGet(changes.size()) > MAX_QUEUED_CHANGES) {
+                LOGGER.info("Disconnecting a change feed client that is more than {} changes behind", MAX_QUEUED_CHANGES);
+                overflowed = true;
+                taskService.unsubscribeFromChanges(this);
+            } else {
+                pending.add(changes);
+            }
+            schedule();
+        }
+
+        void resetTo(long version) {
+            resetVersion = version;
+        }
+
+        void start() {
+            sending.set(false);
+            schedule();
+        }
+
+        private void schedule() {
+            if (sending.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::send);
+                } catch (RejectedExecutionException e) {
+                    // shutting down
+                    close();
+                }
+            }
+        }
+
+        private void send() {
+            try {
+                if (resetVersion >= 0) {
+                    emitter.send(SseEmitter.event().name("reset").id(eventId(resetVersion))
+                            .data(Map.of("version", resetVersion), MediaType.APPLICATION_JSON));
+                    resetVersion = -1;
+                }
+                List<TaskChange> changes;
+                while (!closed && (changes = pending.poll()) != null) {
+                    send(changes);
+                    queued.addAndGet(-changes.size());
+                }
+            } catch (IOException | IllegalStateException e) {
+                LOGGER.debug("Change feed client is gone", e);
+                close();
+            }
+            if (closed) {
+                return;
+            }
+            if (overflowed && pending.isEmpty()) {
+                emitter.complete();
+                return;
+            }
+            sending.set(false);
+            if (!pending.isEmpty() || overflowed) {
+                schedule();
+            }
+        }
+
+        private void send(List<TaskChange> changes) throws IOException {
+            for (int i = 0; i < changes.size(); i++) {
+                TaskChange change = changes.get(i);
+                SseEmitter.SseEventBuilder event = SseEmitter.event()
+                        .name(change.getType().name().toLowerCase())
+                        .data(change, MediaType.APPLICATION_JSON);
+                if (i == changes.size() - 1) {
+                    // Only a whole version is a point to resume from.
+                    event.id(eventId(change.getVersion()));
+                }
+                emitter.send(event);
+            }
+        }
+
+        private void close() {
+            closed = true;
+            taskService.unsubscribeFromChanges(this);
+            pending.clear();
+        }
+    }
+}
@@ -2,20 +2,31 @@ package com.isa.todo.controller;
 
 import com.isa.todo.model.Category;
 import com.isa.todo.model.Task;
+import com.isa.todo.repository.TaskOrder;
+import com.isa.todo.repository.TaskPage;
+import com.isa.todo.repository.TaskQuery;
 import com.isa.todo.service.TaskService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import javax.validation.Valid;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 @Controller
 @RequestMapping("/")
 public class TaskController {
+    private static final String DEFAULT_PAGE_SIZE = "50";
+    private static final int MAX_PAGE_SIZE = 500;
     private final TaskService taskService;
 
     @Autowired
@@ -25,9 +36,14 @@ public class TaskController {
     }
 
     @GetMapping("/")
-    public String home(Model model) {
-        List<Task> tasks = taskService.getAllTasks();
-        model.addAttribute("tasks", tasks);
+    public String home(WebRequest request, Model model,
+                       @RequestParam(value = "after", required = false) String after,
+                       @RequestParam(value = "size", defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        if (notModified(request)) {
+            return null;
+        }
+        TaskPage page = taskService.getAllTasks(after, pageSize(size));
+        addPage(model, page, after);
         model.addAttribute("pageTitle", "Tasks list");
         return "index";
     }
@@ -38,28 +54,30 @@ public class TaskController {
         return "new";
     }
 
+    /**
+     * Mutations complete asynchronously: the request thread is released while the change is persisted and
+     * the redirect is sent once it is done.
+     */
     @PostMapping("/new")
-    public String addTask(@ModelAttribute("newTask") @Valid Task task, BindingResult result, RedirectAttributes redirectAttributes) {
+    public CompletableFuture<String> addTask(@ModelAttribute("newTask") @Valid Task task, BindingResult result, RedirectAttributes redirectAttributes) {
         if (result.hasErrors()) {
-            return "new";
+            return CompletableFuture.completedFuture("new");
         }
-        taskService.addTask(task);
         redirectAttributes.addAttribute("successMessage", "Task added successfully!");
-        return "redirect:/";
+        return taskService.addTaskAsync(task).thenApply(done -> "redirect:/");
     }
 
     @GetMapping("/remove/{id}")
-    public String deleteTask(@PathVariable("id") String id, RedirectAttributes redirectAttributes) {
-        Task task = taskService.getTaskById(id);
-        if (task != null) {
-            taskService.removeTaskById(id);
-        }
+    public CompletableFuture<String> deleteTask(@PathVariable("id") String id, RedirectAttributes redirectAttributes) {
         redirectAttributes.addAttribute("successMessage", "Task remove successfully!");
-        return "redirect:/";
+        return taskService.removeTaskByIdAsync(id).thenApply(done -> "redirect:/");
     }
 
     @GetMapping("/priority1")
-    public String getTasksWithPriority1(Model model) {
+    public String getTasksWithPriority1(WebRequest request, Model model) {
+        if (notModified(request)) {
+            return null;
+        }
         List<Task> priority1Tasks = taskService.findTasksWithPriority1();
         model.addAttribute("tasks", priority1Tasks);
         model.addAttribute("pageTitle", "Priority 1 Tasks");
@@ -81,11 +99,16 @@ public class TaskController {
     }
 
     @GetMapping("/priority-desc")
-    public String sortTasksByPriorityDescending(Model model) {
-        List<Task> priorityTasks = taskService.sortTasksByPriorityDescending();
-        model.addAttribute("tasks", priorityTasks);
+    public String sortTasksByPriorityDescending(WebRequest request, Model model,
+                                                @RequestParam(value = "after", required = false) String after,
+                                                @RequestParam(value = "size", defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        if (notModified(request)) {
+            return null;
+        }
+        TaskPage priorityTasks = taskService.sortTasksByPriorityDescending(after, pageSize(size));
+        addPage(model, priorityTasks, after);
         model.addAttribute("pageTitle", "Priority descending tasks");
-        if (priorityTasks.isEmpty()) {
+        if (priorityTasks.getTasks().isEmpty()) {
             model.addAttribute("Message", "No tasks found.");
         }
         return "index";
@@ -93,40 +116,84 @@ public class TaskController {
 
 
     @GetMapping("/sorted-set")
-    public String sortTasksByDate(Model model) {
-        List<Task> sortTasks = taskService.sortTasksByDate();
-        model.addAttribute("tasks", sortTasks);
+    public String sortTasksByDate(WebRequest request, Model model,
+                                  @RequestParam(value = "after", required = false) String after,
+                                  @RequestParam(value = "size", defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        if (notModified(request)) {
+            return null;
+        }
+        TaskPage sortTasks = taskService.sortTasksByDate(after, pageSize(size));
+        addPage(model, sortTasks, after);
         model.addAttribute("pageTitle", "Sorted tasks by date");
-        if (sortTasks.isEmpty()) {
+        if (sortTasks.getTasks().isEmpty()) {
             model.addAttribute("Message", "No tasks found.");
         }
         return "index";
     }
 
     @GetMapping("/category")
-    public String getTasksByCategory(Model model, @RequestParam("category") Category category) {
-        List<Task> taskByCategory = taskService.findTasksByCategory(category);
-        model.addAttribute("tasks", taskByCategory);
+    public String getTasksByCategory(WebRequest request, Model model, @RequestParam("category") Category category,
+                                     @RequestParam(value = "after", required = false) String after,
+                                     @RequestParam(value = "size", defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        if (notModified(request)) {
+            return null;
+        }
+        TaskPage taskByCategory = taskService.findTasksByCategory(category, after, pageSize(size));
+        addPage(model, taskByCategory, after);
         model.addAttribute("pageTitle", "Tasks by category");
-        if (taskByCategory.isEmpty()) {
+        if (taskByCategory.getTasks().isEmpty()) {
             model.addAttribute("Message", "No tasks found.");
         }
         return "index";
     }
 
     @GetMapping("/description")
-    public String getTasksByDescriptionContains(Model model, @RequestParam("search") String keyword) {
-        List<Task> taskByByDescriptionContains = taskService.findTasksByDescriptionContains(keyword);
-        model.addAttribute("tasks", taskByByDescriptionContains);
+    public String getTasksByDescriptionContains(WebRequest request, Model model, @RequestParam("search") String keyword,
+                                                @RequestParam(value = "after", required = false) String after,
+                                                @RequestParam(value = "size", defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        if (notModified(request)) {
+            return null;
+        }
+        TaskPage taskByByDescriptionContains = taskService.findTasksByDescriptionContains(keyword, after, pageSize(size));
+        addPage(model, taskByByDescriptionContains, after);
         model.addAttribute("pageTitle", "Tasks by description contains");
-        if (taskByByDescriptionContains.isEmpty()) {
+        if (taskByByDescriptionContains.getTasks().isEmpty()) {
+            model.addAttribute("Message", "No tasks found.");
+        }
+        return "index";
+    }
+
+    /**
+     * Combines any of the filters above in one query; the repository decides which index to start from.
+     */
+    @GetMapping("/search")
+    public String searchTasks(WebRequest request, Model model,
+                              @RequestParam(value = "category", required = false) Category category,
+                              @RequestParam(value = "minPriority", required = false) Integer minPriority,
+                              @RequestParam(value = "maxPriority", required = false) Integer maxPriority,
+                              @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                              @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                              @RequestParam(value = "search", required = false) String keyword,
+                              @RequestParam(value = "order", defaultValue = "INSERTION") TaskOrder order,
+                              @RequestParam(value = "limit", defaultValue = DEFAULT_PAGE_SIZE) int limit) {
+        if (notModified(request)) {
+            return null;
+        }
+        List<Task> tasks = taskService.searchTasks(
+                new TaskQuery(category, minPriority, maxPriority, from, to, keyword, order, pageSize(limit)));
+        model.addAttribute("tasks", tasks);
+        model.addAttribute("pageTitle", "Search results");
+        if (tasks.isEmpty()) {
             model.addAttribute("Message", "No tasks found.");
         }
         return "index";
     }
 
     @GetMapping("/most-urgent")
-    public String getMostUrgentTask(Model model) {
+    public String getMostUrgentTask(WebRequest request, Model model) {
+        if (notModified(request)) {
+            return null;
+        }
         Optional<Task> taskOptional = taskService.findMostUrgentTask();
         if (taskOptional.isPresent()) {
             model.addAttribute("tasks", Collections.singletonList(taskOptional.get()));
@@ -140,8 +207,25 @@ public class TaskController {
         return "index";
     }
 
+    @GetMapping("/top-urgent")
+    public String getMostUrgentTasks(WebRequest request, Model model, @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        if (notModified(request)) {
+            return null;
+        }
+        List<Task> urgentTasks = taskService.findMostUrgentTasks(pageSize(limit));
+        model.addAttribute("tasks", urgentTasks);
+        model.addAttribute("pageTitle", "Most urgent tasks");
+        if (urgentTasks.isEmpty()) {
+            model.addAttribute("Message", "No tasks found.");
+        }
+        return "index";
+    }
+
     @GetMapping("/by-category")
-    public String getTasksDividedByCategory(Model model) {
+    public String getTasksDividedByCategory(WebRequest request, Model model) {
+        if (notModified(request)) {
+            return null;
+        }
         Map<Category, List<Task>> tasksByCategory = taskService.divideTasksByCategory();
         model.addAttribute("tasks", tasksByCategory);
         model.addAttribute("pageTitle", "Tasks Divided by Category");
@@ -149,7 +233,10 @@ public class TaskController {
     }
 
     @GetMapping("/by-priority")
-    public String getTasksDividedByPriority(Model model) {
+    public String getTasksDividedByPriority(WebRequest request, Model model) {
+        if (notModified(request)) {
+            return null;
+        }
         Map<Integer, List<Task>> tasksByPriority = taskService.divideTasksByPriority();
         model.addAttribute("tasks", tasksByPriority);
         model.addAttribute("pageTitle", "Tasks Divided by Priority");
@@ -157,7 +244,10 @@ public class TaskController {
     }
 
     @GetMapping("/highest-priority")
-    public String findHighestPriorityTaskForEachCategory(Model model) {
+    public String findHighestPriorityTaskForEachCategory(WebRequest request, Model model) {
+        if (notModified(request)) {
+            return null;
+        }
         Map<Category, Optional<Task>> highestPriorityTasks = taskService.findHighestPriorityTaskForEachCategory();
         model.addAttribute("tasks", highestPriorityTasks);
         model.addAttribute("pageTitle", "Highest Priority Task for Each Category");
@@ -169,4 +259,37 @@ public class TaskController {
         return "menu";
     }
 
+    /**
+     * Answers 304 when the client already has this page for the current repository version. The version is
+     * read before the query runs, so a page is never labelled with a version newer than its content. The
+     * ETag also carries a token per application start, because versions start over after a restart. It has
+     * the format of the change feed's event ids, so a client can subscribe to the changes after the page.
+     */
+    private boolean notModified(WebRequest request) {
+        long lastModified = taskService.getLastModified();
+        return request.checkNotModified("\"" + taskService.getInstanceTag() + "-" + taskService.getVersion() + "\"", lastModified);
+    }
+
+    private static int pageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * Puts one page of tasks into the model together with links to the next and the first page, which keep
+     * every other query parameter of the current request.
+     */
+    private static void addPage(Model model, TaskPage page, String after) {
+        model.addAttribute("tasks", page.getTasks());
+        if (page.hasNext()) {
+            model.addAttribute("nextPageUrl", currentRequestPath().replaceQueryParam("after", page.getNextCursor()).toUriString());
+        }
+        if (after != null) {
+            model.addAttribute("firstPageUrl", currentRequestPath().replaceQueryParam("after").toUriString());
+        }
+    }
+
+    private static UriComponentsBuilder currentRequestPath() {
+        return ServletUriComponentsBuilder.fromCurrentRequest().scheme(null).host(null).port(null);
+    }
+
 }
\ No newline at end of file
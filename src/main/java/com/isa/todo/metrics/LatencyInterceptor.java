@@ -0,0 +1,43 @@
+package com.isa.todo.metrics;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Times every request handled by a controller method under {@code http <method> <mapping pattern>}, so {@code /remove/{id}} is
+ * one timer rather than one per id.
+ */
+public class LatencyInterceptor implements HandlerInterceptor {
+    private static final String START_ATTRIBUTE = LatencyInterceptor.class.getName() + ".start";
+
+    private final Metrics metrics;
+
+    public LatencyInterceptor(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Asynchronous handlers pass through here again when their result is dispatched; the request keeps the
+     * start of its first pass.
+     */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getAttribute(START_ATTRIBUTE) == null) {
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object start = request.getAttribute(START_ATTRIBUTE);
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (handler instanceof HandlerMethod && start != null && pattern != null) {
+            metrics.timer("http " + request.getMethod() + " " + pattern).record(System.nanoTime() - (Long) start);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.isa.todo.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Registry of named latency histograms and gauges. Histograms are created on first use; gauges are read
+ * only when the metrics are scraped.
+ */
+@Component
+public class Metrics {
+    private final Map<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    public LatencyHistogram timer(String name) {
+        LatencyHistogram timer = timers.get(name);
+        return timer != null ? timer : timers.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    public <T> T time(String name, Supplier<T> action) {
+        long start = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            timer(name).record(System.nanoTime() - start);
+        }
+    }
+
+    public void time(String name, Runnable action) {
+        long start = System.nanoTime();
+        try {
+            action.run();
+        } finally {
+            timer(name).record(System.nanoTime() - start);
+        }
+    }
+
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public SortedMap<String, LatencyHistogram.Snapshot> timerSnapshots() {
+        SortedMap<String, LatencyHistogram.Snapshot> snapshots = new TreeMap<>();
+        timers.forEach((name, timer) -> snapshots.put(name, timer.snapshot()));
+        return snapshots;
+    }
+
+    public SortedMap<String, Long> gaugeValues() {
+        SortedMap<String, Long> values = new TreeMap<>();
+        gauges.forEach((name, gauge) -> values.put(name, gauge.getAsLong()));
+        return values;
+    }
+}
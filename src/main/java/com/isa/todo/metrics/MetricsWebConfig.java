@@ -0,0 +1,24 @@
+package com.isa.todo.metrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class MetricsWebConfig implements WebMvcConfigurer {
+    private final Metrics metrics;
+
+    @Autowired
+    public MetricsWebConfig(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new LatencyInterceptor(metrics))
+                .excludePathPatterns("/metrics");
+        registry.addInterceptor(new RequestEventInterceptor())
+                .excludePathPatterns("/metrics");
+    }
+}
@@ -0,0 +1,39 @@
+package com.isa.todo.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for one request handled by a controller method, from the handler being called until the
+ * response is complete, so it includes rendering the view.
+ */
+@Name("com.isa.todo.Request")
+@Label("Request")
+@Category({"To-do", "Web"})
+@StackTrace(false)
+public class RequestEvent extends jdk.jfr.Event {
+    @Label("Handler")
+    public String handler;
+
+    @Label("Method")
+    public String method;
+
+    @Label("Path Pattern")
+    public String path;
+
+    @Label("Status")
+    public int status;
+
+    @Label("Result Size")
+    @Description("Tasks in the model of a rendered view, or -1 if it has none")
+    public int results = -1;
+
+    @Label("Render Time")
+    @Description("Time spent rendering the view after the handler returned")
+    @Timespan
+    public long renderTime;
+}
@@ -0,0 +1,67 @@
+package com.isa.todo.metrics;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.ModelAndView;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Collection;
+
+/**
+ * Records a {@link RequestEvent} for every request handled by a controller method. When the event is not
+ * enabled in a running recording nothing is kept on the request, so this costs next to nothing.
+ */
+public class RequestEventInterceptor implements HandlerInterceptor {
+    private static final String EVENT_ATTRIBUTE = RequestEventInterceptor.class.getName() + ".event";
+    private static final String RENDER_START_ATTRIBUTE = RequestEventInterceptor.class.getName() + ".renderStart";
+
+    /**
+     * Like {@link LatencyInterceptor}, asynchronous handlers keep the event begun on their first pass.
+     */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod && request.getAttribute(EVENT_ATTRIBUTE) == null) {
+            RequestEvent event = new RequestEvent();
+            if (event.isEnabled()) {
+                event.begin();
+                request.setAttribute(EVENT_ATTRIBUTE, event);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) {
+        RequestEvent event = (RequestEvent) request.getAttribute(EVENT_ATTRIBUTE);
+        if (event != null && modelAndView != null) {
+            request.setAttribute(RENDER_START_ATTRIBUTE, System.nanoTime());
+            Object tasks = modelAndView.getModel().get("tasks");
+            if (tasks instanceof Collection) {
+                event.results = ((Collection<?>) tasks).size();
+            }
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        RequestEvent event = (RequestEvent) request.getAttribute(EVENT_ATTRIBUTE);
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            Object renderStart = request.getAttribute(RENDER_START_ATTRIBUTE);
+            if (renderStart != null) {
+                event.renderTime = System.nanoTime() - (Long) renderStart;
+            }
+            HandlerMethod method = (HandlerMethod) handler;
+            event.handler = method.getBeanType().getSimpleName() + "." + method.getMethod().getName();
+            event.method = request.getMethod();
+            event.path = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            event.status = response.getStatus();
+            event.commit();
+        }
+    }
+}
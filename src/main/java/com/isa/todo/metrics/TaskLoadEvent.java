@@ -0,0 +1,35 @@
+package com.isa.todo.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for loading the tasks of one snapshot file and replaying its logs on startup.
+ */
+@Name("com.isa.todo.TaskLoad")
+@Label("Task Load")
+@Category({"To-do", "Repository"})
+@Description("Tasks read from a snapshot and its logs")
+@StackTrace(false)
+public class TaskLoadEvent extends jdk.jfr.Event {
+    @Label("File")
+    public String file;
+
+    @Label("Format")
+    public String format;
+
+    @Label("Tasks Scanned")
+    @Description("Tasks read from the snapshot plus log records replayed on top of it")
+    public int scanned;
+
+    @Label("Tasks Loaded")
+    public int tasks;
+
+    @Label("Bytes Read")
+    @DataAmount
+    public long bytesRead;
+}
@@ -0,0 +1,31 @@
+package com.isa.todo.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one query of the task service, answered from the query cache or by running it on a snapshot.
+ */
+@Name("com.isa.todo.TaskQuery")
+@Label("Task Query")
+@Category({"To-do", "Service"})
+@StackTrace(false)
+public class TaskQueryEvent extends jdk.jfr.Event {
+    @Label("Query")
+    public String query;
+
+    @Label("Cached")
+    @Description("Whether the result came from the query cache")
+    public boolean cached = true;
+
+    @Label("Snapshot Size")
+    @Description("Tasks in the snapshot the query was asked on, not how many of them the query visited")
+    public int snapshotSize;
+
+    @Label("Result Size")
+    @Description("Tasks or groups returned")
+    public int results;
+}
@@ -0,0 +1,37 @@
+package com.isa.todo.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for writing tasks to disk: either a whole snapshot or one batch of log records, including the
+ * fsync that makes the batch durable.
+ */
+@Name("com.isa.todo.TaskSave")
+@Label("Task Save")
+@Category({"To-do", "Repository"})
+@Description("Tasks written as a snapshot or appended to a log")
+@StackTrace(false)
+public class TaskSaveEvent extends jdk.jfr.Event {
+    public static final String SNAPSHOT = "snapshot";
+    public static final String LOG = "log";
+
+    @Label("File")
+    public String file;
+
+    @Label("Kind")
+    @Description("snapshot or log")
+    public String kind;
+
+    @Label("Records")
+    @Description("Tasks in the snapshot, or log records in the batch")
+    public int records;
+
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytesWritten;
+}
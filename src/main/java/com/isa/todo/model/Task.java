@@ -24,7 +24,14 @@ public class Task {
     }
 
     public Task(String description, Category category, int priority, LocalDate dueDate) {
-        this.id = UUID.randomUUID().toString();
+        this(UUID.randomUUID().toString(), description, category, priority, dueDate);
+    }
+
+    /**
+     * Recreates a task that already has an id, e.g. when reading it back from a storage format.
+     */
+    public Task(String id, String description, Category category, int priority, LocalDate dueDate) {
+        this.id = id;
         this.description = description;
         this.category = category;
         this.priority = priority;
@@ -0,0 +1,199 @@
+package com.isa.todo.repository;
+
+import com.isa.todo.model.Category;
+import com.isa.todo.model.Task;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * Binary snapshot format read through a {@link MappedByteBuffer}. Opening a file only maps it and checks the
+ * header; tasks are decoded from fixed-width records when they are read, without any parsing.
+ * <p>
+ * This only makes reading the snapshot cheaper than parsing JSON. The repository still decodes every record
+ * at startup and builds its in-memory indexes from them before it serves anything, and requests are never
+ * answered from the mapping, so a large dataset still takes as long to load as those indexes take to build.
+ * <p>
+ * Layout, big-endian: a 16-byte header (magic, format version, task count, reserved), then one 32-byte
+ * record per task (UUID as two longs, due date as epoch day, priority, description offset, category
+ * ordinal and padding), then a heap of distinct descriptions, each stored as a length and UTF-8 bytes.
+ * Missing values are stored as {@link Integer#MIN_VALUE} for the due date and -1 for the description
+ * offset and category. A file is limited to 2 GB, the size of a single mapping.
+ */
+public final class BinaryTaskFile {
+    private static final int MAGIC = 0x54445342;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 32;
+    private static final int NO_DUE_DATE = Integer.MIN_VALUE;
+    private static final int NONE = -1;
+    private static final Category[] CATEGORIES = Category.values();
+
+    private BinaryTaskFile() {
+    }
+
+    /**
+     * Maps {@code file} into memory. The returned snapshot reads straight from the mapping; its version is
+     * always 0 because files do not carry the repository version.
+     */
+    public static TaskSnapshot map(File file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Binary snapshot " + file + " is larger than 2 GB");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a binary task snapshot");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Unsupported binary snapshot version " + buffer.getInt(4) + " in " + file);
+        }
+        int count = buffer.getInt(8);
+        if (count < 0 || HEADER_SIZE + (long) count * RECORD_SIZE > buffer.capacity()) {
+            throw new IOException("Binary snapshot " + file + " is truncated");
+        }
+        return new MappedTaskSnapshot(buffer, count);
+    }
+
+    public static void write(File file, Iterable<Task> tasks, int size) throws IOException {
+        long heapStart = HEADER_SIZE + (long) size * RECORD_SIZE;
+        ByteArrayOutputStream heap = new ByteArrayOutputStream();
+        Map<String, Integer> heapOffsets = new HashMap<>();
+        try (OutputStream stream = Files.newOutputStream(file.toPath());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(size);
+            out.writeInt(0);
+            int written = 0;
+            for (Task task : tasks) {
+                if (++written > size) {
+                    throw new IOException("More than " + size + " tasks were given");
+                }
+                UUID id = toUuid(task.getId());
+                out.writeLong(id.getMostSignificantBits());
+                out.writeLong(id.getLeastSignificantBits());
+                out.writeInt(task.getDueDate() == null ? NO_DUE_DATE : (int) task.getDueDate().toEpochDay());
+                out.writeInt(task.getPriority());
+                out.writeInt(task.getDescription() == null ? NONE
+                        : heapOffsets.computeIfAbsent(task.getDescription(), description -> appendToHeap(heap, description)));
+                out.writeByte(task.getCategory() == null ? NONE : task.getCategory().ordinal());
+                out.write(new byte[3]);
+            }
+            if (written != size) {
+                throw new IOException("Expected " + size + " tasks but got " + written);
+            }
+            if (heapStart + heap.size() > Integer.MAX_VALUE) {
+                throw new IOException("Binary snapshot would be larger than 2 GB");
+            }
+            heap.writeTo(out);
+        }
+    }
+
+    /**
+     * @return the offset of the appended string within the heap
+     */
+    private static int appendToHeap(ByteArrayOutputStream heap, String description) {
+        byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+        int offset = heap.size();
+        heap.write(bytes.length >>> 24);
+        heap.write(bytes.length >>> 16);
+        heap.write(bytes.length >>> 8);
+        heap.write(bytes.length);
+        heap.writeBytes(bytes);
+        return offset;
+    }
+
+    private static UUID toUuid(String id) throws IOException {
+        try {
+            UUID uuid = UUID.fromString(id);
+            if (uuid.toString().equals(id)) {
+                return uuid;
+            }
+        } catch (IllegalArgumentException e) {
+            // reported below
+        }
+        throw new IOException("Task id is not a UUID: " + id);
+    }
+
+    private static final class MappedTaskSnapshot implements TaskSnapshot {
+        private final MappedByteBuffer buffer;
+        private final int count;
+        private final int heapStart;
+
+        MappedTaskSnapshot(MappedByteBuffer buffer, int count) {
+            this.buffer = buffer;
+            this.count = count;
+            this.heapStart = HEADER_SIZE + count * RECORD_SIZE;
+        }
+
+        @Override
+        public long getVersion() {
+            return 0;
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public Iterator<Task> iterator() {
+            return new Iterator<>() {
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    return next < count;
+                }
+
+                @Override
+                public Task next() {
+                    if (next >= count) {
+                        throw new NoSuchElementException();
+                    }
+                    return task(next++);
+                }
+            };
+        }
+
+        /**
+         * Uses absolute reads only, so any number of threads can decode from the shared buffer.
+         */
+        private Task task(int index) {
+            int record = HEADER_SIZE + index * RECORD_SIZE;
+            int dueDay = buffer.getInt(record + 16);
+            int descriptionOffset = buffer.getInt(record + 24);
+            byte category = buffer.get(record + 28);
+            return new Task(new UUID(buffer.getLong(record), buffer.getLong(record + 8)).toString(),
+                    descriptionOffset == NONE ? null : description(descriptionOffset),
+                    category == NONE ? null : CATEGORIES[category],
+                    buffer.getInt(record + 20),
+                    dueDay == NO_DUE_DATE ? null : LocalDate.ofEpochDay(dueDay));
+        }
+
+        private String description(int offset) {
+            int position = heapStart + offset;
+            byte[] bytes = new byte[buffer.getInt(position)];
+            buffer.get(position + Integer.BYTES, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.isa.todo.repository;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.concurrent.RejectedExecutionException;
+
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Too many pending task changes; retry later")
+public class ChangeQueueFullException extends RejectedExecutionException {
+    private static final long serialVersionUID = 1L;
+
+    public ChangeQueueFullException(int capacity, Throwable cause) {
+        super("The queue of " + capacity + " pending task changes is full", cause);
+    }
+}
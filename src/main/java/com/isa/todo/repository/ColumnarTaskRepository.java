@@ -0,0 +1,494 @@
+package com.isa.todo.repository;
+
+import com.isa.todo.model.Category;
+import com.isa.todo.model.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.function.IntPredicate;
+
+/**
+ * Task store for millions of tasks. Instead of one object graph per task it keeps every field in a primitive
+ * column: the UUID as two longs, the due date as an epoch day, the priority as an int, the category as a
+ * byte ordinal and the description as an index into a deduplicated string pool. {@link Task} objects are
+ * created only when a task is read; they are short-lived copies, so changing one does not change the store.
+ * <p>
+ * Rows are append-only and a removal only stamps the row with the version that removed it. A snapshot is
+ * therefore just the column arrays, a row count and a version, and it stays valid while writers keep
+ * appending. Removed rows are dropped by rebuilding the columns once they outnumber the live ones.
+ * Snapshots have no secondary indexes; their queries scan the columns before creating any task. Lookups by id
+ * probe the id table without the write lock.
+ * <p>
+ * Task ids must be UUIDs in canonical form. Re-adding an existing id moves the task to the end of the list.
+ */
+public class ColumnarTaskRepository implements TaskRepository {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ColumnarTaskRepository.class);
+    private static final Category[] CATEGORIES = Category.values();
+    private static final int NO_DUE_DATE = Integer.MIN_VALUE;
+    private static final byte NO_CATEGORY = -1;
+    private static final int NO_DESCRIPTION = -1;
+    private static final long NOT_REMOVED = Long.MAX_VALUE;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MIN_REMOVED_ROWS_TO_COMPACT = 1024;
+
+    /**
+     * One generation of column arrays. Writers fill rows past the published row count in place and allocate
+     * new arrays only when they run out of space, so the rows a snapshot can see never change except for
+     * their removal stamp. A reader racing with a removal sees either {@link #NOT_REMOVED} or a version newer
+     * than its own, and treats both as live; even a torn read of the stamp is larger than the reader's version.
+     */
+    private static final class Columns {
+        final long[] idHigh;
+        final long[] idLow;
+        final int[] dueDays;
+        final int[] priorities;
+        final byte[] categories;
+        final int[] descriptions;
+        final long[] removedAt;
+
+        Columns(int capacity) {
+            this(new long[capacity], new long[capacity], new int[capacity], new int[capacity], new byte[capacity],
+                    new int[capacity], new long[capacity]);
+        }
+
+        private Columns(long[] idHigh, long[] idLow, int[] dueDays, int[] priorities, byte[] categories,
+                        int[] descriptions, long[] removedAt) {
+            this.idHigh = idHigh;
+            this.idLow = idLow;
+            this.dueDays = dueDays;
+            this.priorities = priorities;
+            this.categories = categories;
+            this.descriptions = descriptions;
+            this.removedAt = removedAt;
+        }
+
+        int capacity() {
+            return idHigh.length;
+        }
+
+        Columns grow(int capacity) {
+            return new Columns(Arrays.copyOf(idHigh, capacity), Arrays.copyOf(idLow, capacity),
+                    Arrays.copyOf(dueDays, capacity), Arrays.copyOf(priorities, capacity),
+                    Arrays.copyOf(categories, capacity), Arrays.copyOf(descriptions, capacity),
+                    Arrays.copyOf(removedAt, capacity));
+        }
+    }
+
+    private volatile ColumnarSnapshot current;
+    private volatile long lastModified;
+    private final TaskChangeFeed changeFeed;
+    private Columns columns;
+    private int rows;
+    private int live;
+    // Open-addressing table from id to row + 1, zero meaning an empty slot; ids are never deleted from it.
+    private int[] idSlots;
+    private int ids;
+    private String[] pool;
+    private int pooled;
+    // Open-addressing table from description to pool index + 1.
+    private int[] poolSlots;
+
+    public ColumnarTaskRepository() {
+        reset(INITIAL_CAPACITY);
+        publish(0);
+        changeFeed = new TaskChangeFeed(0);
+    }
+
+    public ColumnarTaskRepository(Collection<Task> tasks) {
+        reset(Math.max(INITIAL_CAPACITY, tasks.size()));
+        for (Task task : tasks) {
+            append(task, 1);
+        }
+        publish(1);
+        changeFeed = new TaskChangeFeed(1);
+        LOGGER.info("Loaded {} tasks into columns, about {} bytes per task", live, Math.round(getBytesPerTask()));
+    }
+
+    private void reset(int capacity) {
+        columns = new Columns(capacity);
+        rows = 0;
+        live = 0;
+        idSlots = new int[tableSize(capacity)];
+        ids = 0;
+        pool = new String[INITIAL_CAPACITY];
+        pooled = 0;
+        poolSlots = new int[tableSize(INITIAL_CAPACITY)];
+    }
+
+    @Override
+    public TaskSnapshot snapshot() {
+        return current;
+    }
+
+    @Override
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public TaskChangeFeed changeFeed() {
+        return changeFeed;
+    }
+
+    @Override
+    public List<Task> getAllTasks() {
+        return current.toList();
+    }
+
+    /**
+     * Looks the id up in the current snapshot without the write lock. Only if a writer has already pointed
+     * the id table at a row the snapshot does not have yet, it waits for the write lock and looks again.
+     */
+    @Override
+    public Task getTaskById(String id) {
+        UUID uuid = parseId(id);
+        if (uuid == null) {
+            return null;
+        }
+        long high = uuid.getMostSignificantBits();
+        long low = uuid.getLeastSignificantBits();
+        ColumnarSnapshot snapshot = current;
+        int row = snapshot.rowOf(high, low);
+        if (row == ColumnarSnapshot.UNPUBLISHED) {
+            synchronized (this) {
+                snapshot = current;
+                row = snapshot.rowOf(high, low);
+            }
+        }
+        return row < 0 ? null : snapshot.task(row);
+    }
+
+    @Override
+    public synchronized void addTask(Task task) {
+        long version = current.getVersion() + 1;
+        append(task, version);
+        compactIfMostlyRemoved();
+        publish(version);
+        changeFeed.publish(List.of(TaskChange.added(version, task)));
+    }
+
+    @Override
+    public synchronized void removeTaskById(String id) {
+        UUID uuid = parseId(id);
+        if (uuid == null) {
+            return;
+        }
+        int row = idSlots[idSlot(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits())] - 1;
+        if (row < 0 || columns.removedAt[row] != NOT_REMOVED) {
+            return;
+        }
+        long version = current.getVersion() + 1;
+        columns.removedAt[row] = version;
+        live--;
+        compactIfMostlyRemoved();
+        publish(version);
+        changeFeed.publish(List.of(TaskChange.removed(version, id)));
+    }
+
+    /**
+     * Estimates the heap used per live task: column capacity, both hash tables and the pooled descriptions,
+     * assuming compressed references and Latin-1 strings.
+     */
+    public synchronized double getBytesPerTask() {
+        if (live == 0) {
+            return 0;
+        }
+        long bytes = (long) columns.capacity() * (Long.BYTES * 3 + Integer.BYTES * 3 + Byte.BYTES)
+                + (long) (idSlots.length + poolSlots.length + pool.length) * Integer.BYTES;
+        for (int i = 0; i < pooled; i++) {
+            // String object plus its byte array header and contents
+            bytes += 24 + 16 + pool[i].length();
+        }
+        return (double) bytes / live;
+    }
+
+    private void append(Task task, long version) {
+        UUID uuid = parseId(task.getId());
+        if (uuid == null) {
+            throw new IllegalArgumentException("Task id is not a UUID: " + task.getId());
+        }
+        if (rows == columns.capacity()) {
+            columns = columns.grow(rows * 2);
+        }
+        if ((ids + 1) * 2 > idSlots.length) {
+            rehashIds(idSlots.length * 2);
+        }
+        long high = uuid.getMostSignificantBits();
+        long low = uuid.getLeastSignificantBits();
+        int slot = idSlot(high, low);
+        int previous = idSlots[slot] - 1;
+        if (previous < 0) {
+            ids++;
+        } else if (columns.removedAt[previous] == NOT_REMOVED) {
+            columns.removedAt[previous] = version;
+            live--;
+        }
+        int row = rows++;
+        columns.idHigh[row] = high;
+        columns.idLow[row] = low;
+        columns.dueDays[row] = task.getDueDate() == null ? NO_DUE_DATE : (int) task.getDueDate().toEpochDay();
+        columns.priorities[row] = task.getPriority();
+        columns.categories[row] = task.getCategory() == null ? NO_CATEGORY : (byte) task.getCategory().ordinal();
+        columns.descriptions[row] = intern(task.getDescription());
+        columns.removedAt[row] = NOT_REMOVED;
+        idSlots[slot] = row + 1;
+        live++;
+    }
+
+    private void publish(long version) {
+        current = new ColumnarSnapshot(columns, pool, idSlots, rows, live, version);
+        lastModified = System.currentTimeMillis();
+    }
+
+    private void compactIfMostlyRemoved() {
+        if (rows - live >= MIN_REMOVED_ROWS_TO_COMPACT && rows - live > live) {
+            compact();
+        }
+    }
+
+    /**
+     * Copies the live rows into fresh arrays, dropping removed rows, their ids and unused descriptions.
+     * Existing snapshots keep the old arrays.
+     */
+    private void compact() {
+        Columns old = columns;
+        String[] oldPool = pool;
+        int oldRows = rows;
+        reset(Math.max(INITIAL_CAPACITY, live * 2));
+        for (int row = 0; row < oldRows; row++) {
+            if (old.removedAt[row] != NOT_REMOVED) {
+                continue;
+            }
+            int copy = rows++;
+            columns.idHigh[copy] = old.idHigh[row];
+            columns.idLow[copy] = old.idLow[row];
+            columns.dueDays[copy] = old.dueDays[row];
+            columns.priorities[copy] = old.priorities[row];
+            columns.categories[copy] = old.categories[row];
+            columns.descriptions[copy] = old.descriptions[row] == NO_DESCRIPTION
+                    ? NO_DESCRIPTION : intern(oldPool[old.descriptions[row]]);
+            columns.removedAt[copy] = NOT_REMOVED;
+            if ((ids + 1) * 2 > idSlots.length) {
+                rehashIds(idSlots.length * 2);
+            }
+            idSlots[idSlot(old.idHigh[row], old.idLow[row])] = copy + 1;
+            ids++;
+            live++;
+        }
+        LOGGER.debug("Compacted columns from {} to {} rows", oldRows, rows);
+    }
+
+    private int idSlot(long high, long low) {
+        int mask = idSlots.length - 1;
+        int slot = mix(high * 31 + low) & mask;
+        while (true) {
+            int row = idSlots[slot] - 1;
+            if (row < 0 || (columns.idHigh[row] == high && columns.idLow[row] == low)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void rehashIds(int size) {
+        int[] old = idSlots;
+        idSlots = new int[size];
+        for (int entry : old) {
+            if (entry != 0) {
+                idSlots[idSlot(columns.idHigh[entry - 1], columns.idLow[entry - 1])] = entry;
+            }
+        }
+    }
+
+    private int intern(String description) {
+        if (description == null) {
+            return NO_DESCRIPTION;
+        }
+        if ((pooled + 1) * 2 > poolSlots.length) {
+            int[] old = poolSlots;
+            poolSlots = new int[old.length * 2];
+            for (int entry : old) {
+                if (entry != 0) {
+                    poolSlots[poolSlot(pool[entry - 1])] = entry;
+                }
+            }
+        }
+        int slot = poolSlot(description);
+        if (poolSlots[slot] != 0) {
+            return poolSlots[slot] - 1;
+        }
+        if (pooled == pool.length) {
+            pool = Arrays.copyOf(pool, pooled * 2);
+        }
+        pool[pooled] = description;
+        poolSlots[slot] = ++pooled;
+        return pooled - 1;
+    }
+
+    private int poolSlot(String description) {
+        int mask = poolSlots.length - 1;
+        int slot = mix(description.hashCode()) & mask;
+        while (poolSlots[slot] != 0 && !pool[poolSlots[slot] - 1].equals(description)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int mix(long hash) {
+        hash *= 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static int tableSize(int entries) {
+        return Integer.highestOneBit(Math.max(entries, INITIAL_CAPACITY) * 4 - 1);
+    }
+
+    private static UUID parseId(String id) {
+        if (id == null) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(id);
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static final class ColumnarSnapshot implements TaskSnapshot {
+        static final int NOT_FOUND = -1;
+        static final int UNPUBLISHED = -2;
+
+        private final Columns columns;
+        private final String[] pool;
+        // Shared with the writer, which keeps adding to it in place until it replaces the table.
+        private final int[] idSlots;
+        private final int rows;
+        private final int live;
+        private final long version;
+
+        ColumnarSnapshot(Columns columns, String[] pool, int[] idSlots, int rows, int live, long version) {
+            this.columns = columns;
+            this.pool = pool;
+            this.idSlots = idSlots;
+            this.rows = rows;
+            this.live = live;
+            this.version = version;
+        }
+
+        @Override
+        public long getVersion() {
+            return version;
+        }
+
+        @Override
+        public int size() {
+            return live;
+        }
+
+        @Override
+        public Iterator<Task> iterator() {
+            return new Iterator<>() {
+                private int next = nextLive(0);
+
+                @Override
+                public boolean hasNext() {
+                    return next < rows;
+                }
+
+                @Override
+                public Task next() {
+                    if (next >= rows) {
+                        throw new NoSuchElementException();
+                    }
+                    Task task = task(next);
+                    next = nextLive(next + 1);
+                    return task;
+                }
+            };
+        }
+
+        @Override
+        public List<Task> findByCategory(Category category) {
+            byte ordinal = category == null ? NO_CATEGORY : (byte) category.ordinal();
+            return select(row -> columns.categories[row] == ordinal);
+        }
+
+        @Override
+        public List<Task> findByPriority(int priority) {
+            return select(row -> columns.priorities[row] == priority);
+        }
+
+        @Override
+        public List<Task> findByDueDateBetween(LocalDate from, LocalDate to) {
+            int fromDay = (int) from.toEpochDay();
+            int toDay = (int) to.toEpochDay();
+            List<Task> tasks = select(row -> columns.dueDays[row] != NO_DUE_DATE
+                    && columns.dueDays[row] >= fromDay && columns.dueDays[row] <= toDay);
+            tasks.sort(Comparator.comparing(Task::getDueDate));
+            return tasks;
+        }
+
+        private List<Task> select(IntPredicate matches) {
+            List<Task> tasks = new ArrayList<>();
+            for (int row = nextLive(0); row < rows; row = nextLive(row + 1)) {
+                if (matches.test(row)) {
+                    tasks.add(task(row));
+                }
+            }
+            return tasks;
+        }
+
+        /**
+         * Probes the id table while a writer may be adding to it. Every id this snapshot holds was in the
+         * table before the snapshot was published, and ids are never deleted from a table, so its probe
+         * sequence is intact; slots written since then hold rows at or past {@link #rows}, which this
+         * snapshot cannot check and reports as {@link #UNPUBLISHED}.
+         *
+         * @return the live row of the id, {@link #NOT_FOUND} if the snapshot does not hold it, or
+         * {@link #UNPUBLISHED}
+         */
+        int rowOf(long high, long low) {
+            int mask = idSlots.length - 1;
+            int slot = mix(high * 31 + low) & mask;
+            while (true) {
+                int row = idSlots[slot] - 1;
+                if (row < 0) {
+                    return NOT_FOUND;
+                } else if (row >= rows) {
+                    return UNPUBLISHED;
+                } else if (columns.idHigh[row] == high && columns.idLow[row] == low) {
+                    return columns.removedAt[row] <= version ? NOT_FOUND : row;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private int nextLive(int row) {
+            while (row < rows && columns.removedAt[row] <= version) {
+                row++;
+            }
+            return row;
+        }
+
+        Task task(int row) {
+            int dueDay = columns.dueDays[row];
+            byte category = columns.categories[row];
+            int description = columns.descriptions[row];
+            return new Task(new UUID(columns.idHigh[row], columns.idLow[row]).toString(),
+                    description == NO_DESCRIPTION ? null : pool[description],
+                    category == NO_CATEGORY ? null : CATEGORIES[category],
+                    columns.priorities[row],
+                    dueDay == NO_DUE_DATE ? null : LocalDate.ofEpochDay(dueDay));
+        }
+    }
+}
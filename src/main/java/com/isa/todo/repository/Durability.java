@@ -0,0 +1,21 @@
+package com.isa.todo.repository;
+
+/**
+ * When a change appended to the task log reaches the disk.
+ */
+public enum Durability {
+    /**
+     * Every change is written and forced to disk by the writing thread before it becomes visible.
+     */
+    SYNC,
+    /**
+     * Changes arriving within a short window are written and forced to disk together by a background
+     * writer; every writer waits for the flush that covers its change.
+     */
+    GROUP,
+    /**
+     * A background writer forces changes to disk at a fixed interval; writers do not wait, so a crash loses
+     * at most one interval of changes.
+     */
+    PERIODIC
+}
@@ -0,0 +1,160 @@
+package com.isa.todo.repository;
+
+import com.isa.todo.model.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe in-memory task store. Writers are serialized on this object's monitor and publish a new
+ * {@link TaskSnapshot} through a volatile field; readers only read that field, so they never block, never
+ * copy and never observe a half-applied change.
+ */
+public class InMemoryTaskRepository implements TaskRepository {
+    private static final Logger LOGGER = LoggerFactory.getLogger(InMemoryTaskRepository.class);
+
+    private final Map<String, TaskEntry> entriesById = new ConcurrentHashMap<>();
+    private final TaskChangeFeed changeFeed = new TaskChangeFeed(0);
+    private volatile InMemoryTaskSnapshot current = InMemoryTaskSnapshot.EMPTY;
+    private volatile long lastModified = System.currentTimeMillis();
+    private long nextSeq;
+
+    public InMemoryTaskRepository() {
+    }
+
+    public InMemoryTaskRepository(Collection<Task> tasks) {
+        load(tasks);
+    }
+
+    /**
+     * Replaces the whole content without going through {@link #beforeAdd}; used to restore persisted state.
+     * The tasks must have distinct ids.
+     */
+    protected final synchronized void load(Collection<Task> tasks) {
+        entriesById.clear();
+        List<TaskEntry> entries = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            TaskEntry entry = new TaskEntry(nextSeq++, task);
+            entries.add(entry);
+            entriesById.put(task.getId(), entry);
+        }
+        current = InMemoryTaskSnapshot.of(current.getVersion() + 1, entries);
+        lastModified = System.currentTimeMillis();
+        changeFeed.reset(current.getVersion());
+    }
+
+    @Override
+    public TaskSnapshot snapshot() {
+        return current;
+    }
+
+    @Override
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public TaskChangeFeed changeFeed() {
+        return changeFeed;
+    }
+
+    @Override
+    public List<Task> getAllTasks() {
+        return current.toList();
+    }
+
+    @Override
+    public Task getTaskById(String id) {
+        LOGGER.debug("Searching for task with id: {}", id);
+
+        TaskEntry entry = entriesById.get(id);
+        if (entry == null) {
+            LOGGER.debug("Task not found for id: {}", id);
+            return null;
+        }
+        LOGGER.debug("Found task: {}", entry.task);
+        return entry.task;
+    }
+
+    @Override
+    public synchronized void addTask(Task task) {
+        beforeAdd(task);
+        long version = current.getVersion() + 1;
+        put(task, version);
+        lastModified = System.currentTimeMillis();
+        changeFeed.publish(List.of(TaskChange.added(version, task)));
+    }
+
+    /**
+     * Publishes the whole batch as a single new version; readers see either none or all of it.
+     */
+    @Override
+    public synchronized void addTasks(Collection<Task> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        beforeAddAll(tasks);
+        long version = current.getVersion() + 1;
+        List<TaskChange> changes = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            put(task, version);
+            changes.add(TaskChange.added(version, task));
+        }
+        lastModified = System.currentTimeMillis();
+        changeFeed.publish(changes);
+    }
+
+    private void put(Task task, long version) {
+        TaskEntry previous = entriesById.get(task.getId());
+        if (previous == null) {
+            TaskEntry entry = new TaskEntry(nextSeq++, task);
+            entriesById.put(task.getId(), entry);
+            current = current.with(entry, version);
+        } else {
+            // Re-adding an id replaces the task in place, like a put into a LinkedHashMap.
+            TaskEntry entry = new TaskEntry(previous.seq, task);
+            entriesById.put(task.getId(), entry);
+            current = current.without(previous, version).with(entry, version);
+        }
+    }
+
+    @Override
+    public synchronized void removeTaskById(String id) {
+        TaskEntry entry = entriesById.get(id);
+        if (entry == null) {
+            return;
+        }
+        beforeRemove(id);
+        entriesById.remove(id);
+        long version = current.getVersion() + 1;
+        current = current.without(entry, version);
+        lastModified = System.currentTimeMillis();
+        changeFeed.publish(List.of(TaskChange.removed(version, id)));
+    }
+
+    /**
+     * Called with the write lock held before an added task becomes visible. Throwing aborts the add.
+     */
+    protected void beforeAdd(Task task) {
+    }
+
+    /**
+     * Called with the write lock held before a batch of added tasks becomes visible. Throwing aborts the
+     * whole batch. By default calls {@link #beforeAdd} for each task.
+     */
+    protected void beforeAddAll(Collection<Task> tasks) {
+        tasks.forEach(this::beforeAdd);
+    }
+
+    /**
+     * Called with the write lock held before a removal becomes visible, only if the id exists. Throwing
+     * aborts the removal.
+     */
+    protected void beforeRemove(String id) {
+    }
+}
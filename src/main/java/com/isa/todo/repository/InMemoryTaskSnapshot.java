@@ -0,0 +1,569 @@
+package com.isa.todo.repository;
+
+import com.isa.todo.model.Category;
+import com.isa.todo.model.Task;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Snapshot backed by persistent trees. Deriving the next version shares every untouched node with this one.
+ * <p>
+ * Besides the task list in insertion order it keeps secondary indexes that are updated on every add and
+ * remove: per {@link Category} a tree in insertion order and one ordered by (priority, seq), trees ordered
+ * by (priority, seq), (dueDate, seq) and (dueDate, priority, seq), and a {@link TrigramIndex} over the
+ * descriptions. A query walks only the part of an index that matches, so it costs O(log n + k) for k results.
+ * A {@link TaskQuery} combining several criteria is planned: each criterion with an index offers an access
+ * path, and the one expected to touch the fewest entries is walked while the other criteria filter it.
+ */
+final class InMemoryTaskSnapshot implements TaskSnapshot {
+    private static final Category[] CATEGORIES = Category.values();
+    static final String CURSOR_SEPARATOR = "_";
+    private static final Comparator<LocalDate> NULLS_FIRST = Comparator.nullsFirst(Comparator.naturalOrder());
+    static final InMemoryTaskSnapshot EMPTY = of(0, List.of());
+
+    /**
+     * Where {@link #search} starts: the index of one criterion, or a full walk of the index in result order.
+     */
+    enum AccessPath {
+        FULL_SCAN, CATEGORY, PRIORITY_RANGE, DUE_DATE_RANGE, KEYWORD
+    }
+
+    /**
+     * One candidate access path: walks {@code tree} from {@code from} while {@code until} holds, producing
+     * about {@code estimate} entries, already in the requested order if {@code ordered}.
+     */
+    private static final class Plan {
+        final AccessPath path;
+        final PersistentTree<TaskEntry> tree;
+        final PersistentTree.Bound<TaskEntry> from;
+        final Predicate<TaskEntry> until;
+        final int estimate;
+        final boolean ordered;
+
+        Plan(AccessPath path, PersistentTree<TaskEntry> tree, PersistentTree.Bound<TaskEntry> from,
+             Predicate<TaskEntry> until, int estimate, boolean ordered) {
+            this.path = path;
+            this.tree = tree;
+            this.from = from;
+            this.until = until;
+            this.estimate = estimate;
+            this.ordered = ordered;
+        }
+
+        /**
+         * An ordered walk stops after {@code limit} matches. Assuming the {@code matches} expected results are
+         * spread evenly over it, that takes {@code limit / matches} of the walk; an unordered one has to be
+         * walked entirely and sorted.
+         */
+        long cost(int limit, int matches) {
+            return ordered ? Math.min(estimate, (long) limit * estimate / Math.max(1, matches)) : estimate;
+        }
+    }
+
+    private static final class CategoryIndex {
+        final PersistentTree<TaskEntry> bySeq;
+        final PersistentTree<TaskEntry> byPriority;
+
+        CategoryIndex(PersistentTree<TaskEntry> bySeq, PersistentTree<TaskEntry> byPriority) {
+            this.bySeq = bySeq;
+            this.byPriority = byPriority;
+        }
+    }
+
+    private final long version;
+    private final PersistentTree<TaskEntry> bySeq;
+    private final CategoryIndex[] byCategory;
+    private final PersistentTree<TaskEntry> byPriority;
+    private final PersistentTree<TaskEntry> byDueDate;
+    private final PersistentTree<TaskEntry> byUrgency;
+    private final TrigramIndex byTrigram;
+    private final boolean parallel;
+
+    private InMemoryTaskSnapshot(long version, PersistentTree<TaskEntry> bySeq, CategoryIndex[] byCategory,
+                                 PersistentTree<TaskEntry> byPriority, PersistentTree<TaskEntry> byDueDate,
+                                 PersistentTree<TaskEntry> byUrgency, TrigramIndex byTrigram) {
+        this(version, bySeq, byCategory, byPriority, byDueDate, byUrgency, byTrigram, false);
+    }
+
+    private InMemoryTaskSnapshot(long version, PersistentTree<TaskEntry> bySeq, CategoryIndex[] byCategory,
+                                 PersistentTree<TaskEntry> byPriority, PersistentTree<TaskEntry> byDueDate,
+                                 PersistentTree<TaskEntry> byUrgency, TrigramIndex byTrigram, boolean parallel) {
+        this.parallel = parallel;
+        this.version = version;
+        this.bySeq = bySeq;
+        this.byCategory = byCategory;
+        this.byPriority = byPriority;
+        this.byDueDate = byDueDate;
+        this.byUrgency = byUrgency;
+        this.byTrigram = byTrigram;
+    }
+
+    /**
+     * Builds all indexes at once from entries given in sequence order.
+     */
+    static InMemoryTaskSnapshot of(long version, List<TaskEntry> entries) {
+        List<List<TaskEntry>> perCategory = new ArrayList<>(CATEGORIES.length);
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            perCategory.add(new ArrayList<>());
+        }
+        for (TaskEntry entry : entries) {
+            if (entry.category != null) {
+                perCategory.get(entry.category.ordinal()).add(entry);
+            }
+        }
+        CategoryIndex[] byCategory = new CategoryIndex[CATEGORIES.length];
+        for (int i = 0; i < byCategory.length; i++) {
+            byCategory[i] = new CategoryIndex(PersistentTree.fromSorted(TaskEntry.BY_SEQ, perCategory.get(i)),
+                    sortedTree(perCategory.get(i), TaskEntry.BY_PRIORITY));
+        }
+        return new InMemoryTaskSnapshot(version,
+                PersistentTree.fromSorted(TaskEntry.BY_SEQ, entries),
+                byCategory,
+                sortedTree(entries, TaskEntry.BY_PRIORITY),
+                sortedTree(entries, TaskEntry.BY_DUE_DATE),
+                sortedTree(entries, TaskEntry.BY_URGENCY),
+                TrigramIndex.of(entries));
+    }
+
+    private static PersistentTree<TaskEntry> sortedTree(List<TaskEntry> entries, Comparator<TaskEntry> comparator) {
+        List<TaskEntry> sorted = new ArrayList<>(entries);
+        sorted.sort(comparator);
+        return PersistentTree.fromSorted(comparator, sorted);
+    }
+
+    InMemoryTaskSnapshot with(TaskEntry entry, long newVersion) {
+        CategoryIndex[] categories = byCategory;
+        if (entry.category != null) {
+            categories = Arrays.copyOf(byCategory, byCategory.length);
+            CategoryIndex category = categories[entry.category.ordinal()];
+            categories[entry.category.ordinal()] = new CategoryIndex(category.bySeq.insert(entry), category.byPriority.insert(entry));
+        }
+        return new InMemoryTaskSnapshot(newVersion, bySeq.insert(entry), categories, byPriority.insert(entry),
+                byDueDate.insert(entry), byUrgency.insert(entry), byTrigram.with(entry));
+    }
+
+    InMemoryTaskSnapshot without(TaskEntry entry, long newVersion) {
+        CategoryIndex[] categories = byCategory;
+        if (entry.category != null) {
+            categories = Arrays.copyOf(byCategory, byCategory.length);
+            CategoryIndex category = categories[entry.category.ordinal()];
+            categories[entry.category.ordinal()] = new CategoryIndex(category.bySeq.remove(entry), category.byPriority.remove(entry));
+        }
+        return new InMemoryTaskSnapshot(newVersion, bySeq.remove(entry), categories, byPriority.remove(entry),
+                byDueDate.remove(entry), byUrgency.remove(entry), byTrigram.without(entry));
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public int size() {
+        return bySeq.size();
+    }
+
+    /**
+     * Full walks of an index, such as a short keyword search, split by rank across the pool; range walks
+     * over the priority and due date indexes stay sequential since they only touch the result.
+     */
+    @Override
+    public TaskSnapshot parallel() {
+        return parallel ? this
+                : new InMemoryTaskSnapshot(version, bySeq, byCategory, byPriority, byDueDate, byUrgency, byTrigram, true);
+    }
+
+    @Override
+    public Stream<Task> stream() {
+        return tasks(bySeq);
+    }
+
+    @Override
+    public Iterator<Task> iterator() {
+        return iterate(bySeq.iterator());
+    }
+
+    @Override
+    public List<Task> findByCategory(Category category) {
+        if (category == null) {
+            return TaskSnapshot.super.findByCategory(null);
+        }
+        return toList(byCategory[category.ordinal()].bySeq);
+    }
+
+    @Override
+    public Stream<Task> stream(TaskOrder order) {
+        return tasks(index(order));
+    }
+
+    @Override
+    public Stream<Task> streamByCategory(Category category) {
+        if (category == null) {
+            return TaskSnapshot.super.streamByCategory(null);
+        }
+        return tasks(byCategory[category.ordinal()].bySeq);
+    }
+
+    @Override
+    public Stream<Task> streamByPriority(int priority) {
+        return entries(byPriority.iterator(entry -> priority <= entry.priority ? -1 : 1, true))
+                .takeWhile(entry -> entry.priority == priority)
+                .map(entry -> entry.task);
+    }
+
+    @Override
+    public Stream<Task> streamByDueDateBetween(LocalDate from, LocalDate to) {
+        return entries(byDueDate.iterator(entry -> entry.dueDate == null || from.isAfter(entry.dueDate) ? 1 : -1, true))
+                .takeWhile(entry -> entry.dueDate != null && !entry.dueDate.isAfter(to))
+                .map(entry -> entry.task);
+    }
+
+    /**
+     * Keywords of three or more characters go through the trigram index; shorter ones match too many tasks
+     * for an index to help and are checked against the lowercased descriptions kept in the entries.
+     */
+    @Override
+    public Stream<Task> streamByDescriptionContaining(String keyword) {
+        String lowerKeyword = keyword.toLowerCase();
+        PersistentTree<TaskEntry> candidates = lowerKeyword.length() >= 3 ? byTrigram.candidates(lowerKeyword) : bySeq;
+        return StreamSupport.stream(candidates.spliterator(), parallel)
+                .filter(entry -> entry.lowerDescription != null && entry.lowerDescription.contains(lowerKeyword))
+                .map(entry -> entry.task);
+    }
+
+    @Override
+    public TaskPage page(TaskOrder order, String after, int limit) {
+        switch (order) {
+            case DUE_DATE:
+                return page(byDueDate, after == null ? null : dueDateBound(after), InMemoryTaskSnapshot::dueDateCursor,
+                        entry -> true, limit);
+            case PRIORITY:
+                return page(byPriority, after == null ? null : priorityBound(after), InMemoryTaskSnapshot::priorityCursor,
+                        entry -> true, limit);
+            case URGENCY:
+                return page(byUrgency, after == null ? null : urgencyBound(after), InMemoryTaskSnapshot::urgencyCursor,
+                        entry -> true, limit);
+            default:
+                return page(bySeq, after == null ? null : seqBound(after), InMemoryTaskSnapshot::seqCursor,
+                        entry -> true, limit);
+        }
+    }
+
+    @Override
+    public TaskPage pageByCategory(Category category, String after, int limit) {
+        if (category == null) {
+            return TaskSnapshot.super.pageByCategory(null, after, limit);
+        }
+        return page(byCategory[category.ordinal()].bySeq, after == null ? null : seqBound(after),
+                InMemoryTaskSnapshot::seqCursor, entry -> true, limit);
+    }
+
+    @Override
+    public TaskPage pageByDescriptionContaining(String keyword, String after, int limit) {
+        String lowerKeyword = keyword.toLowerCase();
+        PersistentTree<TaskEntry> candidates = lowerKeyword.length() >= 3 ? byTrigram.candidates(lowerKeyword) : bySeq;
+        return page(candidates, after == null ? null : seqBound(after), InMemoryTaskSnapshot::seqCursor,
+                entry -> entry.lowerDescription != null && entry.lowerDescription.contains(lowerKeyword), limit);
+    }
+
+    @Override
+    public List<Task> search(TaskQuery query) {
+        Plan plan = plan(query);
+        Iterator<TaskEntry> walk = plan.from == null ? plan.tree.iterator() : plan.tree.iterator(plan.from, true);
+        Stream<TaskEntry> entries = entries(walk).takeWhile(plan.until).filter(query::matches);
+        if (!plan.ordered) {
+            entries = entries.sorted(comparator(query.getOrder()));
+        }
+        return entries.limit(query.getLimit()).map(entry -> entry.task).collect(Collectors.toList());
+    }
+
+    /**
+     * @return the access path {@link #search} takes for {@code query}
+     */
+    AccessPath accessPath(TaskQuery query) {
+        return plan(query).path;
+    }
+
+    /**
+     * Collects an access path per indexed criterion with its exact size, taken from the index in O(log n),
+     * and picks the cheapest. Keywords shorter than three characters have no index and only filter.
+     */
+    private Plan plan(TaskQuery query) {
+        TaskOrder order = query.getOrder();
+        List<Plan> plans = new ArrayList<>();
+        plans.add(new Plan(AccessPath.FULL_SCAN, index(order), null, entry -> true, size(), true));
+        if (query.getCategory() != null) {
+            CategoryIndex category = byCategory[query.getCategory().ordinal()];
+            PersistentTree<TaskEntry> tree = order == TaskOrder.PRIORITY ? category.byPriority : category.bySeq;
+            plans.add(new Plan(AccessPath.CATEGORY, tree, null, entry -> true, tree.size(),
+                    order == TaskOrder.PRIORITY || order == TaskOrder.INSERTION));
+        }
+        if (query.hasPriorityRange()) {
+            int min = query.getMinPriority() == null ? Integer.MIN_VALUE : query.getMinPriority();
+            int max = query.getMaxPriority() == null ? Integer.MAX_VALUE : query.getMaxPriority();
+            PersistentTree.Bound<TaskEntry> from = entry -> min <= entry.priority ? -1 : 1;
+            PersistentTree.Bound<TaskEntry> to = entry -> max < entry.priority ? -1 : 1;
+            plans.add(new Plan(AccessPath.PRIORITY_RANGE, byPriority, from, entry -> entry.priority <= max,
+                    Math.max(0, byPriority.countBefore(to) - byPriority.countBefore(from)), order == TaskOrder.PRIORITY));
+        }
+        if (query.hasDueDateRange()) {
+            LocalDate fromDate = query.getDueFrom();
+            LocalDate toDate = query.getDueTo();
+            PersistentTree.Bound<TaskEntry> from = entry ->
+                    entry.dueDate == null || fromDate != null && fromDate.isAfter(entry.dueDate) ? 1 : -1;
+            PersistentTree.Bound<TaskEntry> to = entry ->
+                    entry.dueDate == null || toDate == null || !toDate.isBefore(entry.dueDate) ? 1 : -1;
+            // The urgency index is ordered by due date first, so the same range of it comes out in urgency order.
+            PersistentTree<TaskEntry> tree = order == TaskOrder.URGENCY ? byUrgency : byDueDate;
+            plans.add(new Plan(AccessPath.DUE_DATE_RANGE, tree, from,
+                    entry -> toDate == null || !entry.dueDate.isAfter(toDate),
+                    Math.max(0, byDueDate.countBefore(to) - byDueDate.countBefore(from)),
+                    order == TaskOrder.DUE_DATE || order == TaskOrder.URGENCY));
+        }
+        if (query.getKeyword() != null && query.getKeyword().length() >= 3) {
+            PersistentTree<TaskEntry> candidates = byTrigram.candidates(query.getKeyword());
+            plans.add(new Plan(AccessPath.KEYWORD, candidates, null, entry -> true, candidates.size(),
+                    order == TaskOrder.INSERTION));
+        }
+
+        int matches = plans.stream().mapToInt(plan -> plan.estimate).min().orElse(0);
+        // On equal cost the ordered path wins, since it saves the sort.
+        return plans.stream()
+                .min(Comparator.<Plan>comparingLong(plan -> plan.cost(query.getLimit(), matches))
+                        .thenComparing(plan -> !plan.ordered))
+                .orElseThrow();
+    }
+
+    private PersistentTree<TaskEntry> index(TaskOrder order) {
+        switch (order) {
+            case DUE_DATE:
+                return byDueDate;
+            case PRIORITY:
+                return byPriority;
+            case URGENCY:
+                return byUrgency;
+            default:
+                return bySeq;
+        }
+    }
+
+    private static Comparator<TaskEntry> comparator(TaskOrder order) {
+        switch (order) {
+            case DUE_DATE:
+                return TaskEntry.BY_DUE_DATE;
+            case PRIORITY:
+                return TaskEntry.BY_PRIORITY;
+            case URGENCY:
+                return TaskEntry.BY_URGENCY;
+            default:
+                return TaskEntry.BY_SEQ;
+        }
+    }
+
+    /**
+     * Walks {@code tree} from just past the cursor, collecting matching tasks. One extra match is looked at
+     * to decide whether there is a next page.
+     */
+    private static TaskPage page(PersistentTree<TaskEntry> tree, PersistentTree.Bound<TaskEntry> after,
+                                 Function<TaskEntry, String> cursorOf, Predicate<TaskEntry> filter, int limit) {
+        Iterator<TaskEntry> entries = after == null ? tree.iterator() : tree.iterator(after, false);
+        List<Task> tasks = new ArrayList<>(Math.min(limit, 256));
+        TaskEntry last = null;
+        while (entries.hasNext()) {
+            TaskEntry entry = entries.next();
+            if (!filter.test(entry)) {
+                continue;
+            }
+            if (tasks.size() == limit) {
+                return new TaskPage(tasks, cursorOf.apply(last));
+            }
+            tasks.add(entry.task);
+            last = entry;
+        }
+        return new TaskPage(tasks, null);
+    }
+
+    private static String seqCursor(TaskEntry entry) {
+        return Long.toString(entry.seq);
+    }
+
+    private static String dueDateCursor(TaskEntry entry) {
+        return formatDueDate(entry) + CURSOR_SEPARATOR + entry.seq;
+    }
+
+    private static String priorityCursor(TaskEntry entry) {
+        return entry.priority + CURSOR_SEPARATOR + entry.seq;
+    }
+
+    private static String urgencyCursor(TaskEntry entry) {
+        return formatDueDate(entry) + CURSOR_SEPARATOR + entry.priority + CURSOR_SEPARATOR + entry.seq;
+    }
+
+    private static String formatDueDate(TaskEntry entry) {
+        return entry.dueDate == null ? "" : entry.dueDate.toString();
+    }
+
+    private static PersistentTree.Bound<TaskEntry> seqBound(String cursor) {
+        long seq = parseSeq(cursorParts(cursor, 1)[0], cursor);
+        return entry -> Long.compare(seq, entry.seq);
+    }
+
+    private static PersistentTree.Bound<TaskEntry> dueDateBound(String cursor) {
+        String[] parts = cursorParts(cursor, 2);
+        LocalDate dueDate = parseDueDate(parts[0], cursor);
+        long seq = parseSeq(parts[1], cursor);
+        return entry -> {
+            int c = Objects.compare(dueDate, entry.dueDate, NULLS_FIRST);
+            return c != 0 ? c : Long.compare(seq, entry.seq);
+        };
+    }
+
+    private static PersistentTree.Bound<TaskEntry> priorityBound(String cursor) {
+        String[] parts = cursorParts(cursor, 2);
+        int priority = parsePriority(parts[0], cursor);
+        long seq = parseSeq(parts[1], cursor);
+        return entry -> {
+            int c = Integer.compare(priority, entry.priority);
+            return c != 0 ? c : Long.compare(seq, entry.seq);
+        };
+    }
+
+    private static PersistentTree.Bound<TaskEntry> urgencyBound(String cursor) {
+        String[] parts = cursorParts(cursor, 3);
+        LocalDate dueDate = parseDueDate(parts[0], cursor);
+        int priority = parsePriority(parts[1], cursor);
+        long seq = parseSeq(parts[2], cursor);
+        return entry -> {
+            int c = Objects.compare(dueDate, entry.dueDate, NULLS_FIRST);
+            if (c == 0) {
+                c = Integer.compare(priority, entry.priority);
+            }
+            return c != 0 ? c : Long.compare(seq, entry.seq);
+        };
+    }
+
+    static String[] cursorParts(String cursor, int count) {
+        String[] parts = cursor.split(CURSOR_SEPARATOR, -1);
+        if (parts.length != count) {
+            throw new InvalidCursorException(cursor);
+        }
+        return parts;
+    }
+
+    static LocalDate parseDueDate(String value, String cursor) {
+        try {
+            return value.isEmpty() ? null : LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
+
+    static int parsePriority(String value, String cursor) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
+
+    static long parseSeq(String value, String cursor) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
+
+    @Override
+    public Map<Category, List<Task>> groupByCategory() {
+        Map<Category, List<Task>> result = new EnumMap<>(Category.class);
+        for (Category category : CATEGORIES) {
+            PersistentTree<TaskEntry> tasks = byCategory[category.ordinal()].bySeq;
+            if (!tasks.isEmpty()) {
+                result.put(category, toList(tasks));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<Integer, List<Task>> groupByPriority() {
+        Map<Integer, List<Task>> result = new TreeMap<>();
+        List<Task> current = null;
+        int currentPriority = 0;
+        for (TaskEntry entry : byPriority) {
+            if (current == null || entry.priority != currentPriority) {
+                current = new ArrayList<>();
+                currentPriority = entry.priority;
+                result.put(currentPriority, current);
+            }
+            current.add(entry.task);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<Category, Optional<Task>> findHighestPriorityPerCategory() {
+        Map<Category, Optional<Task>> result = new EnumMap<>(Category.class);
+        for (Category category : CATEGORIES) {
+            TaskEntry first = byCategory[category.ordinal()].byPriority.first();
+            if (first != null) {
+                result.put(category, Optional.of(first.task));
+            }
+        }
+        return result;
+    }
+
+    private static List<Task> toList(PersistentTree<TaskEntry> tree) {
+        List<Task> result = new ArrayList<>(tree.size());
+        for (TaskEntry entry : tree) {
+            result.add(entry.task);
+        }
+        return result;
+    }
+
+    private static Stream<TaskEntry> entries(Iterator<TaskEntry> entries) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(entries,
+                Spliterator.ORDERED | Spliterator.IMMUTABLE | Spliterator.NONNULL), false);
+    }
+
+    private static Stream<Task> tasks(Iterator<TaskEntry> entries) {
+        return entries(entries).map(entry -> entry.task);
+    }
+
+    private Stream<Task> tasks(PersistentTree<TaskEntry> tree) {
+        return StreamSupport.stream(tree.spliterator(), parallel).map(entry -> entry.task);
+    }
+
+    private static Iterator<Task> iterate(Iterator<TaskEntry> entries) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public Task next() {
+                return entries.next().task;
+            }
+        };
+    }
+}
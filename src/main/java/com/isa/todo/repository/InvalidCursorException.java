@@ -0,0 +1,13 @@
+package com.isa.todo.repository;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST, reason = "Invalid page cursor")
+public class InvalidCursorException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    public InvalidCursorException(String cursor) {
+        super("Invalid page cursor: " + cursor);
+    }
+}
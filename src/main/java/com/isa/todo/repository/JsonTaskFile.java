@@ -0,0 +1,75 @@
+package com.isa.todo.repository;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.isa.todo.model.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Reads and writes a JSON array of tasks one record at a time through Jackson's streaming API, so only the
+ * current record is ever buffered besides the tasks themselves. Progress is logged every
+ * {@value #PROGRESS_INTERVAL} tasks.
+ */
+final class JsonTaskFile {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JsonTaskFile.class);
+    private static final int PROGRESS_INTERVAL = 100_000;
+
+    private final ObjectMapper objectMapper;
+    private final ObjectReader taskReader;
+    private final ObjectWriter taskWriter;
+
+    JsonTaskFile(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.taskReader = objectMapper.readerFor(Task.class);
+        this.taskWriter = objectMapper.writerFor(Task.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * @return the number of tasks read
+     */
+    int read(File file, Consumer<Task> consumer) throws IOException {
+        long fileSize = file.length();
+        int read = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(file)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected an array of tasks in " + file);
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                consumer.accept(taskReader.readValue(parser));
+                if (++read % PROGRESS_INTERVAL == 0) {
+                    long offset = parser.getCurrentLocation().getByteOffset();
+                    LOGGER.info("Loading tasks: {} read, {} of {} bytes", read, offset, fileSize);
+                }
+            }
+            if (parser.currentToken() != JsonToken.END_ARRAY) {
+                throw new IOException("Unexpected " + parser.currentToken() + " in " + file);
+            }
+        }
+        return read;
+    }
+
+    void write(File file, Iterable<Task> tasks, int size) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(file, JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            int written = 0;
+            for (Task task : tasks) {
+                taskWriter.writeValue(generator, task);
+                if (++written % PROGRESS_INTERVAL == 0) {
+                    LOGGER.info("Saving tasks: {} of {} written", written, size);
+                }
+            }
+            generator.writeEndArray();
+        }
+    }
+}
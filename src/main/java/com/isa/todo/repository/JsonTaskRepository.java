@@ -1,104 +1,449 @@
 package com.isa.todo.repository;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.isa.todo.metrics.Metrics;
 import com.isa.todo.model.Task;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Repository;
 
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Keeps tasks in an {@link InMemoryTaskRepository} and persists them as a snapshot plus an append-only JSON
+ * log of mutations. Every add/remove appends one line to {@code tasks.json.log}; once the log grows past
+ * the compaction threshold a background thread folds it into a fresh snapshot. On startup the snapshot is
+ * loaded and the log is replayed on top of it. The snapshot is {@code tasks.json} by default, or the
+ * memory-mapped {@code tasks.bin} (with {@code tasks.bin.log}) when {@code todo.repository.snapshot-format}
+ * is {@code binary}; that only saves the parsing, the tasks are loaded into memory either way. The files
+ * live in {@code todo.repository.data-dir}, which is seeded from the {@code tasks.json} on the classpath
+ * when it is empty; without a data directory that classpath file is used directly.
+ * <p>
+ * With {@code todo.repository.shards} above 1, or {@code todo.repository.shard-by=category}, the tasks are
+ * split across independent shards, each with its own snapshot and log; see {@link ShardLayout}. A change
+ * only appends to the log of its task's shard and a compaction only rewrites that shard, and the shards
+ * are loaded in parallel at startup. An existing single-file layout is split on the first start; any other
+ * change of layout is refused. Within a shard tasks keep their order, but after a restart the task list
+ * holds the shards one after another.
+ * <p>
+ * How log records reach the disk is set by {@code todo.repository.durability}, see {@link Durability}. With
+ * {@code group} and {@code periodic} a change becomes visible to readers before it is durable; with
+ * {@code group} the writing call still returns only once it is.
+ * <p>
+ * The asynchronous variants of the mutations run on a single I/O thread with a bounded queue of
+ * {@value #IO_QUEUE_CAPACITY} changes, so callers never wait on the write lock or on file I/O; their
+ * futures complete once the change is as durable as the blocking variant would have made it, or fail with a
+ * {@link ChangeQueueFullException} when the queue is full.
+ */
 @Repository
-public class JsonTaskRepository implements TaskRepository {
+@ConditionalOnProperty(name = "todo.repository.type", havingValue = "json", matchIfMissing = true)
+public class JsonTaskRepository extends InMemoryTaskRepository {
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskRepository.class);
     static Resource resource = new ClassPathResource("tasks.json");
-    static File FILE_NAME;
+    private static final int IO_QUEUE_CAPACITY = 10_000;
 
-    static {
+    private final ObjectMapper objectMapper;
+    private final Metrics metrics;
+    private final File snapshotFile;
+    private final SnapshotFormat snapshotFormat;
+    private final ShardLayout layout;
+    private final List<TaskShard> shards;
+    private final int compactionThreshold;
+    private final Durability durability;
+    private final ExecutorService compactionExecutor;
+    private final ExecutorService ioExecutor;
+    private CompletableFuture<Void> lastAppend;
+
+    @Autowired
+    public JsonTaskRepository(ObjectMapper objectMapper, Metrics metrics,
+                              @Value("${todo.repository.data-dir:}") String dataDir,
+                              @Value("${todo.repository.snapshot-format:json}") SnapshotFormat snapshotFormat,
+                              @Value("${todo.repository.shard-by:hash}") ShardKey shardBy,
+                              @Value("${todo.repository.shards:1}") int shards,
+                              @Value("${todo.repository.durability:group}") Durability durability,
+                              @Value("${todo.repository.group-commit-window-ms:1}") long groupCommitWindowMs,
+                              @Value("${todo.repository.periodic-flush-interval-ms:1000}") long periodicFlushIntervalMs,
+                              @Value("${todo.repository.compaction-threshold:10000}") int compactionThreshold) {
+        this(objectMapper, metrics, snapshotFileIn(dataDir, snapshotFormat), snapshotFormat, ShardLayout.of(shardBy, shards),
+                durability, durability == Durability.PERIODIC ? periodicFlushIntervalMs : groupCommitWindowMs,
+                compactionThreshold);
+    }
+
+    JsonTaskRepository(ObjectMapper objectMapper, File snapshotFile, int compactionThreshold) {
+        this(objectMapper, snapshotFile, SnapshotFormat.JSON, compactionThreshold);
+    }
+
+    JsonTaskRepository(ObjectMapper objectMapper, File snapshotFile, SnapshotFormat snapshotFormat, int compactionThreshold) {
+        this(objectMapper, new Metrics(), snapshotFile, snapshotFormat, compactionThreshold);
+    }
+
+    JsonTaskRepository(ObjectMapper objectMapper, Metrics metrics, File snapshotFile, SnapshotFormat snapshotFormat,
+                       int compactionThreshold) {
+        this(objectMapper, metrics, snapshotFile, snapshotFormat, Durability.GROUP, 0, compactionThreshold);
+    }
+
+    JsonTaskRepository(ObjectMapper objectMapper, Metrics metrics, File snapshotFile, SnapshotFormat snapshotFormat,
+                       Durability durability, long flushIntervalMs, int compactionThreshold) {
+        this(objectMapper, metrics, snapshotFile, snapshotFormat, ShardLayout.SINGLE, durability, flushIntervalMs,
+                compactionThreshold);
+    }
+
+    /**
+     * @param snapshotFile    the snapshot of the single-file layout; shard files are named after it
+     * @param flushIntervalMs the group commit window or the periodic flush interval, depending on
+     *                        {@code durability}
+     */
+    JsonTaskRepository(ObjectMapper objectMapper, Metrics metrics, File snapshotFile, SnapshotFormat snapshotFormat,
+                       ShardLayout layout, Durability durability, long flushIntervalMs, int compactionThreshold) {
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+        this.snapshotFile = snapshotFile;
+        this.snapshotFormat = snapshotFormat;
+        this.layout = layout;
+        this.compactionThreshold = compactionThreshold;
+        this.durability = durability;
+        List<TaskShard> shards = new ArrayList<>(layout.count());
+        for (int i = 0; i < layout.count(); i++) {
+            shards.add(new TaskShard(objectMapper, layout.fileFor(snapshotFile, i), snapshotFormat));
+        }
+        this.shards = List.copyOf(shards);
+        this.compactionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-log-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // One thread keeps asynchronous changes in submission order; they are serialized by the write lock anyway.
+        this.ioExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(IO_QUEUE_CAPACITY), runnable -> {
+            Thread thread = new Thread(runnable, "task-io");
+            thread.setDaemon(true);
+            return thread;
+        });
+        metrics.time("repository.load", () -> load(loadTasksFromFiles()));
+        for (TaskShard shard : this.shards) {
+            shard.openLog(durability, flushIntervalMs, metrics);
+        }
+        metrics.gauge("tasks", () -> snapshot().size());
+        metrics.gauge("snapshot_version", () -> snapshot().getVersion());
+        metrics.gauge("snapshot_bytes", () -> this.shards.stream().mapToLong(shard -> shard.snapshotFile.length()).sum());
+        metrics.gauge("log_bytes", () -> this.shards.stream().mapToLong(shard -> shard.logFile.length()).sum());
+    }
+
+    /**
+     * Resolves the snapshot of the single-file layout inside {@code dataDir}, copying the bundled
+     * {@code tasks.json} there if the directory holds no tasks of this repository yet. Other files, such as
+     * the database of the sql repository, do not count.
+     */
+    private static File snapshotFileIn(String dataDir, SnapshotFormat snapshotFormat) {
         try {
-            FILE_NAME = resource.getFile();
+            File jsonFile;
+            if (dataDir.isEmpty()) {
+                jsonFile = resource.getFile();
+            } else {
+                File directory = new File(dataDir);
+                Files.createDirectories(directory.toPath());
+                jsonFile = new File(directory, "tasks.json");
+                if (!hasStoredTasks(jsonFile) && resource.exists()) {
+                    try (InputStream seed = resource.getInputStream()) {
+                        Files.copy(seed, jsonFile.toPath());
+                    }
+                    LOGGER.info("Seeded {} from the bundled tasks", jsonFile.getAbsolutePath());
+                }
+            }
+            return snapshotFormat == SnapshotFormat.BINARY ? binaryFileFor(jsonFile) : jsonFile;
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw new RuntimeException("Failed to open data directory " + dataDir, e);
         }
     }
 
-    private final ObjectMapper objectMapper;
-    private final List<Task> tasks;
-    TaskRepository taskRepository;
+    /**
+     * @return whether a snapshot, log or shard manifest of either format exists next to {@code jsonFile}
+     */
+    private static boolean hasStoredTasks(File jsonFile) {
+        File binaryFile = binaryFileFor(jsonFile);
+        return Stream.of(jsonFile, binaryFile, new File(jsonFile.getPath() + ".log"), new File(binaryFile.getPath() + ".log"),
+                        ShardLayout.manifestFor(jsonFile))
+                .anyMatch(File::exists);
+    }
 
-    public JsonTaskRepository(ObjectMapper objectMapper) {
-        this.objectMapper = objectMapper;
-        this.tasks = loadTasksFromFile(objectMapper);
-        this.taskRepository = this;
+    static File binaryFileFor(File jsonFile) {
+        return TaskShard.binaryFileFor(jsonFile);
     }
 
-    private static List<Task> loadTasksFromFile(ObjectMapper objectMapper) {
+    /**
+     * Loads every shard in parallel. Without a manifest the directory holds the single-file layout, which is
+     * split into the configured shards and then kept as an export.
+     */
+    private Collection<Task> loadTasksFromFiles() {
         try {
-            File file = new File(FILE_NAME.toURI());
-            if (file.exists()) {
-                return objectMapper.readValue(file, new TypeReference<>() {
-                });
+            File manifest = ShardLayout.manifestFor(snapshotFile);
+            ShardLayout stored = ShardLayout.read(manifest);
+            if (stored.equals(layout)) {
+                Map<String, Task> tasksById = new LinkedHashMap<>();
+                shards.parallelStream().map(JsonTaskRepository::loadShard).forEachOrdered(tasksById::putAll);
+                return tasksById.values();
             }
+            if (manifest.exists()) {
+                throw new IllegalStateException("The tasks in " + snapshotFile.getParentFile() + " are stored as "
+                        + stored + " shards, not " + layout
+                        + "; set todo.repository.shard-by and todo.repository.shards to match");
+            }
+            Collection<Task> tasks = new TaskShard(objectMapper, snapshotFile, snapshotFormat).load().values();
+            Map<Integer, List<Task>> tasksByShard = tasks.stream().collect(Collectors.groupingBy(layout::shardOf));
+            shards.parallelStream().forEach(shard -> {
+                List<Task> shardTasks = tasksByShard.getOrDefault(shards.indexOf(shard), List.of());
+                try {
+                    shard.replaceWith(shardTasks, shardTasks.size());
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to write shard " + shard.snapshotFile, e);
+                }
+            });
+            layout.write(manifest);
+            LOGGER.info("Split {} tasks from {} into {} shards", tasks.size(), snapshotFile, layout);
+            return tasks;
         } catch (IOException e) {
             throw new RuntimeException("Failed to load tasks from file", e);
         }
-        return new ArrayList<>();
+    }
+
+    private static Map<String, Task> loadShard(TaskShard shard) {
+        try {
+            return shard.load();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load tasks from " + shard.snapshotFile, e);
+        }
     }
 
     @Override
     public List<Task> getAllTasks() {
-        return new ArrayList<>(tasks);
+        return metrics.time("repository.getAllTasks", () -> super.getAllTasks());
+    }
+
+    @Override
+    public Task getTaskById(String id) {
+        return metrics.time("repository.getTaskById", () -> super.getTaskById(id));
     }
 
     @Override
     public void addTask(Task task) {
-        tasks.add(task);
-        saveTasksToFile();
+        metrics.time("repository.addTask", () -> applyDurably(() -> super.addTask(task)));
     }
 
     @Override
-    public Task getTaskById(String id) {
-        LOGGER.debug("Searching for task with id: {}", id);
+    public void addTasks(Collection<Task> tasks) {
+        metrics.time("repository.addTasks", () -> applyDurably(() -> super.addTasks(tasks)));
+    }
+
+    @Override
+    public void removeTaskById(String id) {
+        metrics.time("repository.removeTaskById", () -> applyDurably(() -> super.removeTaskById(id)));
+    }
+
+    @Override
+    public CompletableFuture<Void> addTaskAsync(Task task) {
+        return applyAsync("repository.addTaskAsync", () -> super.addTask(task));
+    }
+
+    @Override
+    public CompletableFuture<Void> removeTaskByIdAsync(String id) {
+        return applyAsync("repository.removeTaskByIdAsync", () -> super.removeTaskById(id));
+    }
 
-        Optional<Task> taskOptional = this.taskRepository.getAllTasks().stream()
-                .filter(task -> task.getId().equals(id))
-                .findFirst();
+    @Override
+    public CompletableFuture<Void> flush() {
+        return CompletableFuture.allOf(shards.stream().map(shard -> shard.logWriter.requestFlush())
+                .toArray(CompletableFuture[]::new));
+    }
 
-        if (taskOptional.isPresent()) {
-            Task task = taskOptional.get();
-            LOGGER.debug("Found task: {}", task);
-            return task;
-        } else {
-            LOGGER.debug("Task not found for id: {}", id);
-            return null;
+    /**
+     * Applies a change under the write lock, then, with {@link Durability#GROUP}, waits outside the lock for
+     * the flush covering its log record, so other writers can join the same batch meanwhile.
+     */
+    private void applyDurably(Runnable change) {
+        try {
+            apply(change).join();
+        } catch (CompletionException e) {
+            throw new RuntimeException("Failed to persist task change", e.getCause());
         }
     }
 
-    private void saveTasksToFile() {
+    /**
+     * Applies the change on the I/O thread. That thread does not wait for group commits either: the
+     * returned future is completed by the log writer once the batch is on disk. If the queue of pending changes
+     * is full, the future fails with a {@link ChangeQueueFullException} instead.
+     */
+    private CompletableFuture<Void> applyAsync(String timer, Runnable change) {
+        long start = System.nanoTime();
         try {
-            objectMapper.writeValue(new File(FILE_NAME.toURI()), this.tasks);
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to save tasks to file", e);
+            return CompletableFuture.supplyAsync(() -> apply(change), ioExecutor)
+                    .thenCompose(durable -> durable)
+                    .whenComplete((ignored, e) -> metrics.timer(timer).record(System.nanoTime() - start));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new ChangeQueueFullException(IO_QUEUE_CAPACITY, e));
+        }
+    }
+
+    /**
+     * @return a future completed once the change is durable as required by the durability mode
+     */
+    private CompletableFuture<Void> apply(Runnable change) {
+        CompletableFuture<Void> durable;
+        synchronized (this) {
+            lastAppend = null;
+            change.run();
+            durable = lastAppend;
         }
+        return durable != null && durability == Durability.GROUP ? durable : CompletableFuture.completedFuture(null);
     }
 
     @Override
-    public void removeTaskById(String id) {
-        Optional<Task> taskOptional = tasks.stream()
-                .filter(task -> task.getId().equals(id))
-                .findFirst();
+    protected void beforeAdd(Task task) {
+        int shard = layout.shardOf(task);
+        Task previous = super.getTaskById(task.getId());
+        if (previous != null && layout.shardOf(previous) != shard) {
+            // The task moved to another shard; drop it from the old one so a reload cannot resurrect it.
+            appendToLog(layout.shardOf(previous), List.of(TaskLogEntry.removed(task.getId())));
+        }
+        appendToLog(shard, List.of(TaskLogEntry.added(task)));
+    }
 
-        taskOptional.ifPresent(task -> {
-            tasks.remove(task);
-            saveTasksToFile();
-        });
+    @Override
+    protected void beforeAddAll(Collection<Task> tasks) {
+        Map<Integer, List<TaskLogEntry>> entriesByShard = new LinkedHashMap<>();
+        // A batch may hold the same id more than once, so track where each id ends up as the batch goes.
+        Map<String, Integer> shardById = new HashMap<>();
+        for (Task task : tasks) {
+            int shard = layout.shardOf(task);
+            Integer previousShard = shardById.get(task.getId());
+            if (previousShard == null) {
+                Task previous = super.getTaskById(task.getId());
+                previousShard = previous == null ? null : layout.shardOf(previous);
+            }
+            if (previousShard != null && previousShard != shard) {
+                entriesByShard.computeIfAbsent(previousShard, i -> new ArrayList<>())
+                        .add(TaskLogEntry.removed(task.getId()));
+            }
+            entriesByShard.computeIfAbsent(shard, i -> new ArrayList<>()).add(TaskLogEntry.added(task));
+            shardById.put(task.getId(), shard);
+        }
+        entriesByShard.forEach(this::appendToLog);
+    }
+
+    @Override
+    protected void beforeRemove(String id) {
+        Task task = super.getTaskById(id);
+        if (task != null) {
+            appendToLog(layout.shardOf(task), List.of(TaskLogEntry.removed(id)));
+        }
+    }
+
+    private void appendToLog(int shard, List<TaskLogEntry> entries) {
+        List<byte[]> records = new ArrayList<>(entries.size());
+        try {
+            for (TaskLogEntry entry : entries) {
+                records.add(objectMapper.writeValueAsBytes(entry));
+            }
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to append to task log", e);
+        }
+        CompletableFuture<Void> appended = shards.get(shard).logWriter.append(records);
+        lastAppend = lastAppend == null ? appended : CompletableFuture.allOf(lastAppend, appended);
+        recordsAppended(shard, records.size());
+    }
+
+    private void recordsAppended(int shard, int count) {
+        TaskShard target = shards.get(shard);
+        target.logRecords += count;
+        if (target.logRecords >= compactionThreshold && !target.compactionScheduled) {
+            target.compactionScheduled = true;
+            compactionExecutor.execute(() -> compact(shard));
+        }
+    }
+
+    /**
+     * Compacts every shard with pending log records.
+     */
+    void compact() {
+        for (int i = 0; i < shards.size(); i++) {
+            compact(i);
+        }
+    }
+
+    /**
+     * Folds the log of one shard into a new snapshot of it. Only taking the snapshot and rotating the log
+     * happen under the write lock; writers keep appending to the fresh log while the snapshot is serialized.
+     */
+    private void compact(int index) {
+        TaskShard shard = shards.get(index);
+        TaskSnapshot snapshot;
+        synchronized (this) {
+            shard.compactionScheduled = false;
+            if (shard.logRecords == 0) {
+                return;
+            }
+            snapshot = snapshot();
+            shard.rotateLog();
+        }
+        long start = System.nanoTime();
+        try {
+            if (shards.size() == 1) {
+                shard.writeSnapshot(snapshot, snapshot.size());
+            } else {
+                List<Task> tasks = layout.tasksOf(snapshot, index);
+                shard.writeSnapshot(tasks, tasks.size());
+            }
+            Files.delete(shard.compactingLogFile.toPath());
+            metrics.timer("repository.compact").record(System.nanoTime() - start);
+            LOGGER.debug("Compacted task log into snapshot {}", shard.snapshotFile);
+        } catch (IOException e) {
+            // The rotated log is kept and replayed on the next startup or folded into the next compaction.
+            LOGGER.error("Failed to compact task log", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        ioExecutor.shutdown();
+        try {
+            ioExecutor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        compactionExecutor.shutdown();
+        try {
+            compactionExecutor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            shards.forEach(shard -> shard.logWriter.close());
+        }
     }
 
 }
@@ -0,0 +1,352 @@
+package com.isa.todo.repository;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Immutable weight-balanced binary search tree. Every update returns a new tree that shares all untouched
+ * nodes with the old one, so an update costs O(log n) allocations and any previously obtained tree stays
+ * valid and unchanged. This is what lets readers hold a snapshot without locks or copies.
+ */
+final class PersistentTree<E> implements Iterable<E> {
+    private static final int DELTA = 3;
+    private static final int RATIO = 2;
+
+    /**
+     * Locates a position in the tree without having to build an element to compare against. Returns a
+     * negative number if the searched key sorts before {@code element}, zero if it matches and a positive
+     * number if it sorts after.
+     */
+    @FunctionalInterface
+    interface Bound<E> {
+        int compareTo(E element);
+    }
+
+    private static final class Node<E> {
+        final E element;
+        final Node<E> left;
+        final Node<E> right;
+        final int size;
+
+        Node(E element, Node<E> left, Node<E> right) {
+            this.element = element;
+            this.left = left;
+            this.right = right;
+            this.size = size(left) + size(right) + 1;
+        }
+    }
+
+    private final Comparator<? super E> comparator;
+    private final Node<E> root;
+
+    private PersistentTree(Comparator<? super E> comparator, Node<E> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    static <E> PersistentTree<E> empty(Comparator<? super E> comparator) {
+        return new PersistentTree<>(comparator, null);
+    }
+
+    /**
+     * Builds a perfectly balanced tree in O(n) from elements that are already sorted by {@code comparator}.
+     */
+    static <E> PersistentTree<E> fromSorted(Comparator<? super E> comparator, List<E> sorted) {
+        return new PersistentTree<>(comparator, build(sorted, 0, sorted.size()));
+    }
+
+    private static <E> Node<E> build(List<E> sorted, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int mid = (from + to) >>> 1;
+        return new Node<>(sorted.get(mid), build(sorted, from, mid), build(sorted, mid + 1, to));
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Returns a tree containing {@code element}, replacing an element that compares equal to it.
+     */
+    PersistentTree<E> insert(E element) {
+        return new PersistentTree<>(comparator, insert(root, element));
+    }
+
+    PersistentTree<E> remove(E element) {
+        Node<E> newRoot = remove(root, element);
+        return newRoot == root ? this : new PersistentTree<>(comparator, newRoot);
+    }
+
+    E find(Bound<? super E> bound) {
+        Node<E> node = root;
+        while (node != null) {
+            int c = bound.compareTo(node.element);
+            if (c == 0) {
+                return node.element;
+            }
+            node = c < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    E first() {
+        Node<E> node = root;
+        if (node == null) {
+            return null;
+        }
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node.element;
+    }
+
+    /**
+     * Counts the elements that sort before {@code bound} in O(log n), using the subtree sizes. The
+     * difference of two counts is the size of the range between the bounds.
+     */
+    int countBefore(Bound<? super E> bound) {
+        int count = 0;
+        Node<E> node = root;
+        while (node != null) {
+            if (bound.compareTo(node.element) > 0) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Ascending<>(root, element -> -1, true);
+    }
+
+    /**
+     * Iterates in ascending order starting at the first element that is not before {@code from}, or
+     * strictly after it when {@code inclusive} is false.
+     */
+    Iterator<E> iterator(Bound<? super E> from, boolean inclusive) {
+        return new Ascending<>(root, from, inclusive);
+    }
+
+    /**
+     * Splits by rank, halving the remaining range each time, so a parallel stream over the tree divides the
+     * work evenly and keeps the ascending encounter order.
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new RankSpliterator<>(root, 0, size(root));
+    }
+
+    private Node<E> insert(Node<E> node, E element) {
+        if (node == null) {
+            return new Node<>(element, null, null);
+        }
+        int c = comparator.compare(element, node.element);
+        if (c < 0) {
+            return balance(node.element, insert(node.left, element), node.right);
+        } else if (c > 0) {
+            return balance(node.element, node.left, insert(node.right, element));
+        }
+        return new Node<>(element, node.left, node.right);
+    }
+
+    private Node<E> remove(Node<E> node, E element) {
+        if (node == null) {
+            return null;
+        }
+        int c = comparator.compare(element, node.element);
+        if (c < 0) {
+            Node<E> left = remove(node.left, element);
+            return left == node.left ? node : balance(node.element, left, node.right);
+        } else if (c > 0) {
+            Node<E> right = remove(node.right, element);
+            return right == node.right ? node : balance(node.element, node.left, right);
+        }
+        return glue(node.left, node.right);
+    }
+
+    private static <E> Node<E> glue(Node<E> left, Node<E> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.size > right.size) {
+            Node<E> max = left;
+            while (max.right != null) {
+                max = max.right;
+            }
+            return balance(max.element, removeMax(left), right);
+        }
+        Node<E> min = right;
+        while (min.left != null) {
+            min = min.left;
+        }
+        return balance(min.element, left, removeMin(right));
+    }
+
+    private static <E> Node<E> removeMin(Node<E> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.element, removeMin(node.left), node.right);
+    }
+
+    private static <E> Node<E> removeMax(Node<E> node) {
+        if (node.right == null) {
+            return node.left;
+        }
+        return balance(node.element, node.left, removeMax(node.right));
+    }
+
+    private static <E> Node<E> balance(E element, Node<E> left, Node<E> right) {
+        int sizeLeft = size(left);
+        int sizeRight = size(right);
+        if (sizeLeft + sizeRight <= 1) {
+            return new Node<>(element, left, right);
+        }
+        if (sizeRight > DELTA * sizeLeft) {
+            if (size(right.left) < RATIO * size(right.right)) {
+                return new Node<>(right.element, new Node<>(element, left, right.left), right.right);
+            }
+            Node<E> pivot = right.left;
+            return new Node<>(pivot.element, new Node<>(element, left, pivot.left),
+                    new Node<>(right.element, pivot.right, right.right));
+        }
+        if (sizeLeft > DELTA * sizeRight) {
+            if (size(left.right) < RATIO * size(left.left)) {
+                return new Node<>(left.element, left.left, new Node<>(element, left.right, right));
+            }
+            Node<E> pivot = left.right;
+            return new Node<>(pivot.element, new Node<>(left.element, left.left, pivot.left),
+                    new Node<>(element, pivot.right, right));
+        }
+        return new Node<>(element, left, right);
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Ascending<E> implements Iterator<E> {
+        private final Deque<Node<E>> stack = new ArrayDeque<>();
+
+        /**
+         * Starts at the element with the given zero-based rank.
+         */
+        Ascending(Node<E> root, int fromRank) {
+            Node<E> node = root;
+            int offset = 0;
+            while (node != null) {
+                int rank = offset + size(node.left);
+                if (rank >= fromRank) {
+                    stack.push(node);
+                    node = node.left;
+                } else {
+                    offset = rank + 1;
+                    node = node.right;
+                }
+            }
+        }
+
+        Ascending(Node<E> root, Bound<? super E> from, boolean inclusive) {
+            Node<E> node = root;
+            while (node != null) {
+                int c = from.compareTo(node.element);
+                if (c < 0 || (c == 0 && inclusive)) {
+                    stack.push(node);
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public E next() {
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node<E> node = stack.pop();
+            for (Node<E> child = node.right; child != null; child = child.left) {
+                stack.push(child);
+            }
+            return node.element;
+        }
+    }
+
+    private static final class RankSpliterator<E> implements Spliterator<E> {
+        private final Node<E> root;
+        private final int to;
+        private int from;
+        private Ascending<E> iterator;
+
+        RankSpliterator(Node<E> root, int from, int to) {
+            this.root = root;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (from >= to) {
+                return false;
+            }
+            if (iterator == null) {
+                iterator = new Ascending<>(root, from);
+            }
+            from++;
+            action.accept(iterator.next());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            while (tryAdvance(action)) {
+                // advances one element at a time
+            }
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            if (iterator != null || to - from < 2) {
+                return null;
+            }
+            int mid = (from + to) >>> 1;
+            Spliterator<E> prefix = new RankSpliterator<>(root, from, mid);
+            from = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+        }
+    }
+}
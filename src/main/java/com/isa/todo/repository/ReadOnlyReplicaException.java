@@ -0,0 +1,13 @@
+package com.isa.todo.repository;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.METHOD_NOT_ALLOWED, reason = "Read-only replica; send changes to the primary")
+public class ReadOnlyReplicaException extends UnsupportedOperationException {
+    private static final long serialVersionUID = 1L;
+
+    public ReadOnlyReplicaException() {
+        super("This instance is a read-only replica; send changes to the primary");
+    }
+}
@@ -0,0 +1,59 @@
+package com.isa.todo.repository;
+
+import com.isa.todo.model.Task;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The repository of a follower, selected with {@code todo.repository.type=replica}: an in-memory copy of the
+ * primary's tasks that {@link ReplicationClient} keeps up to date. It serves reads only and keeps nothing on
+ * disk; after a restart it is loaded from the primary again. Its versions are its own, counted like those of
+ * any {@link InMemoryTaskRepository}.
+ */
+@Repository
+@ConditionalOnProperty(name = "todo.repository.type", havingValue = "replica")
+public class ReplicaTaskRepository extends InMemoryTaskRepository {
+
+    @Override
+    public void addTask(Task task) {
+        throw new ReadOnlyReplicaException();
+    }
+
+    @Override
+    public void addTasks(Collection<Task> tasks) {
+        throw new ReadOnlyReplicaException();
+    }
+
+    @Override
+    public void removeTaskById(String id) {
+        throw new ReadOnlyReplicaException();
+    }
+
+    /**
+     * Applies the log records of one primary version; a batch of additions stays a single version here too.
+     */
+    void replicate(List<TaskLogEntry> entries) {
+        if (entries.stream().allMatch(entry -> entry.getOp() == TaskLogEntry.Operation.ADD)) {
+            super.addTasks(entries.stream().map(TaskLogEntry::getTask).collect(Collectors.toList()));
+            return;
+        }
+        for (TaskLogEntry entry : entries) {
+            if (entry.getOp() == TaskLogEntry.Operation.ADD) {
+                super.addTask(entry.getTask());
+            } else {
+                super.removeTaskById(entry.getId());
+            }
+        }
+    }
+
+    /**
+     * Replaces the whole content with the primary's task list.
+     */
+    void replicateAll(Collection<Task> tasks) {
+        load(tasks);
+    }
+}
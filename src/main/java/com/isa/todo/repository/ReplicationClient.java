@@ -0,0 +1,169 @@
+package com.isa.todo.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.isa.todo.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Keeps the {@link ReplicaTaskRepository} of a follower in sync with the primary at
+ * {@code todo.replication.primary}, see {@link ReplicationServer}. It reconnects whenever the connection drops
+ * or the primary has been silent for {@value #READ_TIMEOUT_MS} ms, resuming after the last applied version.
+ * <p>
+ * Replication lag is reported as the gauges {@code replication_lag_versions}, how many versions the primary
+ * is ahead according to its latest message, and {@code replication_lag_ms}, how long ago the primary
+ * published the change applied last; the latter compares wall clocks of both hosts.
+ */
+@Component
+@ConditionalOnProperty(name = "todo.repository.type", havingValue = "replica")
+public class ReplicationClient {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicationClient.class);
+    private static final int READ_TIMEOUT_MS = 5_000;
+    private static final long RECONNECT_DELAY_MS = 1_000;
+
+    private final ReplicaTaskRepository repository;
+    private final ObjectMapper objectMapper;
+    private final String host;
+    private final int port;
+    private final Thread thread;
+    private volatile Socket socket;
+    private volatile boolean closed;
+    private volatile boolean connected;
+    // Written by the replication thread only.
+    private String primaryInstance;
+    private volatile long appliedVersion = -1;
+    private volatile long primaryVersion = -1;
+    private volatile long lagMs;
+
+    /**
+     * @param primary {@code host:port} of the primary's replication port
+     */
+    @Autowired
+    public ReplicationClient(ReplicaTaskRepository repository, ObjectMapper objectMapper, Metrics metrics,
+                             @Value("${todo.replication.primary:localhost:7070}") String primary) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        int separator = primary.lastIndexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Primary must be given as host:port but was " + primary);
+        }
+        this.host = primary.substring(0, separator);
+        this.port = Integer.parseInt(primary.substring(separator + 1));
+        metrics.gauge("replication_connected", () -> connected ? 1 : 0);
+        metrics.gauge("replication_lag_versions", this::getLagVersions);
+        metrics.gauge("replication_lag_ms", this::getLagMs);
+        this.thread = new Thread(this::run, "replication-client");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return the number of primary versions not applied yet, or -1 before the first contact
+     */
+    public long getLagVersions() {
+        return primaryVersion < 0 ? -1 : Math.max(0, primaryVersion - appliedVersion);
+    }
+
+    public long getLagMs() {
+        return lagMs;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    private void run() {
+        while (!closed) {
+            try (Socket socket = new Socket()) {
+                this.socket = socket;
+                socket.connect(new InetSocketAddress(host, port), READ_TIMEOUT_MS);
+                socket.setSoTimeout(READ_TIMEOUT_MS);
+                socket.setTcpNoDelay(true);
+                follow(socket);
+            } catch (IOException e) {
+                if (!closed) {
+                    LOGGER.warn("Lost connection to primary {}:{}: {}", host, port, e.getMessage());
+                }
+            } finally {
+                connected = false;
+            }
+            try {
+                Thread.sleep(RECONNECT_DELAY_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void follow(Socket socket) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(objectMapper.writeValueAsBytes(ReplicationMessage.subscribe(primaryInstance, appliedVersion)));
+        out.write('\n');
+        out.flush();
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        connected = true;
+        LOGGER.info("Following primary {}:{} after version {}", host, port, appliedVersion);
+        String line;
+        while ((line = in.readLine()) != null) {
+            apply(objectMapper.readValue(line, ReplicationMessage.class));
+        }
+        LOGGER.info("Primary {}:{} closed the connection", host, port);
+    }
+
+    private void apply(ReplicationMessage message) {
+        switch (message.getType()) {
+            case RESET:
+                repository.replicateAll(message.getTasks());
+                primaryInstance = message.getInstance();
+                appliedVersion = message.getVersion();
+                primaryVersion = message.getVersion();
+                lagMs = 0;
+                LOGGER.info("Loaded {} tasks at version {} from the primary", message.getTasks().size(), message.getVersion());
+                break;
+            case CHANGES:
+                // Versions at or below the applied one were already in the task list sent with a reset.
+                if (message.getVersion() > appliedVersion) {
+                    repository.replicate(message.getEntries());
+                    appliedVersion = message.getVersion();
+                }
+                primaryVersion = Math.max(primaryVersion, message.getVersion());
+                lagMs = Math.max(0, System.currentTimeMillis() - message.getTime());
+                break;
+            case HEARTBEAT:
+                primaryVersion = Math.max(appliedVersion, message.getVersion());
+                if (appliedVersion >= message.getVersion()) {
+                    lagMs = 0;
+                }
+                break;
+            default:
+                LOGGER.warn("Ignoring unexpected {} message from the primary", message.getType());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                LOGGER.debug("Failed to close replication socket", e);
+            }
+        }
+    }
+}
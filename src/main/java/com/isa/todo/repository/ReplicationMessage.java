@@ -0,0 +1,123 @@
+package com.isa.todo.repository;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.isa.todo.model.Task;
+
+import java.util.List;
+
+/**
+ * One line of the replication protocol between {@link ReplicationServer} and {@link ReplicationClient}. A
+ * follower opens the connection with {@link Type#SUBSCRIBE}; the primary answers with {@link Type#RESET} if
+ * the follower cannot resume, then streams {@link Type#CHANGES}, one message per version, and sends
+ * {@link Type#HEARTBEAT}s while idle.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+class ReplicationMessage {
+    enum Type {
+        /**
+         * Follower to primary: the primary instance and version the follower last applied.
+         */
+        SUBSCRIBE,
+        /**
+         * The whole task list at a version, replacing whatever the follower has.
+         */
+        RESET,
+        /**
+         * The log records of one version, with the time the primary published them.
+         */
+        CHANGES,
+        /**
+         * The primary's current version while there are no changes to send.
+         */
+        HEARTBEAT
+    }
+
+    private Type type;
+    private String instance;
+    private long version;
+    private long time;
+    private List<Task> tasks;
+    private List<TaskLogEntry> entries;
+
+    ReplicationMessage() {
+    }
+
+    private ReplicationMessage(Type type, long version) {
+        this.type = type;
+        this.version = version;
+    }
+
+    static ReplicationMessage subscribe(String instance, long version) {
+        ReplicationMessage message = new ReplicationMessage(Type.SUBSCRIBE, version);
+        message.instance = instance;
+        return message;
+    }
+
+    static ReplicationMessage reset(String instance, long version, List<Task> tasks) {
+        ReplicationMessage message = new ReplicationMessage(Type.RESET, version);
+        message.instance = instance;
+        message.tasks = tasks;
+        return message;
+    }
+
+    static ReplicationMessage changes(long version, List<TaskLogEntry> entries, long time) {
+        ReplicationMessage message = new ReplicationMessage(Type.CHANGES, version);
+        message.entries = entries;
+        message.time = time;
+        return message;
+    }
+
+    static ReplicationMessage heartbeat(long version) {
+        ReplicationMessage message = new ReplicationMessage(Type.HEARTBEAT, version);
+        message.time = System.currentTimeMillis();
+        return message;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public String getInstance() {
+        return instance;
+    }
+
+    public void setInstance(String instance) {
+        this.instance = instance;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    public List<Task> getTasks() {
+        return tasks;
+    }
+
+    public void setTasks(List<Task> tasks) {
+        this.tasks = tasks;
+    }
+
+    public List<TaskLogEntry> getEntries() {
+        return entries;
+    }
+
+    public void setEntries(List<TaskLogEntry> entries) {
+        this.entries = entries;
+    }
+}
@@ -0,0 +1,215 @@
+package com.isa.todo.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.isa.todo.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Makes this instance a replication primary: followers connect to {@code todo.replication.port} and receive
+ * the ordered log of changes as newline-delimited JSON, see {@link ReplicationMessage}. Works with any
+ * repository, as it only reads {@link TaskRepository#snapshot()} and {@link TaskRepository#changeFeed()}.
+ * <p>
+ * A follower that reconnects to the same primary process resumes after the last version it applied, as long
+ * as the change feed still has it; otherwise it first gets the whole task list. Each follower has its own
+ * queue of up to {@value #MAX_QUEUED_VERSIONS} versions and its own sender thread, so a slow follower never
+ * holds up writers; one that falls further behind is disconnected and catches up when it reconnects.
+ * <p>
+ * Followers are not authenticated, and anyone who can connect gets the whole task list. So the port only
+ * listens on {@code todo.replication.bind-address}, loopback unless configured otherwise.
+ */
+@Component
+@ConditionalOnProperty(name = "todo.replication.port")
+public class ReplicationServer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicationServer.class);
+    private static final int MAX_QUEUED_VERSIONS = 20_000;
+    private static final long HEARTBEAT_INTERVAL_MS = 1_000;
+
+    private final TaskRepository repository;
+    private final ObjectMapper objectMapper;
+    // Versions restart with the process, so a follower may only resume from this very instance.
+    private final String instance = UUID.randomUUID().toString();
+    private final ServerSocket serverSocket;
+    private final Set<Follower> followers = ConcurrentHashMap.newKeySet();
+    private final Thread acceptor;
+    private volatile boolean closed;
+
+    @Autowired
+    public ReplicationServer(TaskRepository repository, ObjectMapper objectMapper, Metrics metrics,
+                             @Value("${todo.replication.port}") int port,
+                             @Value("${todo.replication.bind-address:127.0.0.1}") String bindAddress) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        try {
+            serverSocket = new ServerSocket();
+            // A restarted primary must not wait for connections of its previous run to leave TIME_WAIT.
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(new InetSocketAddress(bindAddress, port));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to listen for followers on " + bindAddress + ":" + port, e);
+        }
+        acceptor = new Thread(this::accept, "replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        metrics.gauge("replication_followers", followers::size);
+        LOGGER.info("Replicating to followers connecting on {}:{}", bindAddress, getPort());
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Follower follower = new Follower(serverSocket.accept());
+                Thread sender = new Thread(follower::serve, "replication-sender");
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException e) {
+                if (!closed) {
+                    LOGGER.error("Failed to accept follower", e);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        closed = true;
+        try {
+            serverSocket.close();
+            // The port is only released once the acceptor has left accept().
+            acceptor.join(1_000);
+        } catch (IOException e) {
+            LOGGER.error("Failed to close replication socket", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        followers.forEach(Follower::disconnect);
+    }
+
+    private final class Follower implements Consumer<List<TaskChange>> {
+        private final Socket socket;
+        private final BlockingQueue<ReplicationMessage> pending = new ArrayBlockingQueue<>(MAX_QUEUED_VERSIONS);
+        private volatile boolean overflowed;
+
+        Follower(Socket socket) {
+            this.socket = socket;
+        }
+
+        /**
+         * Called on the writing thread with the repository's write lock held, so it must not block.
+         */
+        @Override
+        public void accept(List<TaskChange> changes) {
+            List<TaskLogEntry> entries = changes.stream()
+                    .map(change -> change.getType() == TaskChange.Type.ADDED
+                            ? TaskLogEntry.added(change.getTask()) : TaskLogEntry.removed(change.getId()))
+                    .collect(Collectors.toList());
+            if (!overflowed && !pending.offer(ReplicationMessage.changes(changes.get(0).getVersion(), entries,
+                    System.currentTimeMillis()))) {
+                overflowed = true;
+            }
+        }
+
+        void serve() {
+            followers.add(this);
+            TaskChangeFeed feed = repository.changeFeed();
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                 OutputStream out = new BufferedOutputStream(socket.getOutputStream())) {
+                socket.setTcpNoDelay(true);
+                String line = in.readLine();
+                if (line == null) {
+                    return;
+                }
+                ReplicationMessage subscribe = objectMapper.readValue(line, ReplicationMessage.class);
+                long fromVersion = instance.equals(subscribe.getInstance()) ? subscribe.getVersion() : -1;
+                if (feed.subscribe(fromVersion, this) != fromVersion) {
+                    feed.unsubscribe(this);
+                    TaskSnapshot snapshot = subscribeAtSnapshot(feed);
+                    send(out, ReplicationMessage.reset(instance, snapshot.getVersion(), snapshot.toList()));
+                    LOGGER.info("Sent {} tasks at version {} to follower {}", snapshot.size(), snapshot.getVersion(),
+                            socket.getRemoteSocketAddress());
+                } else {
+                    LOGGER.info("Follower {} resumed after version {}", socket.getRemoteSocketAddress(), fromVersion);
+                }
+                out.flush();
+                while (!closed && !overflowed) {
+                    ReplicationMessage message = pending.poll(HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    if (message == null) {
+                        send(out, ReplicationMessage.heartbeat(repository.getVersion()));
+                    }
+                    // Send whatever else is queued before flushing, so a burst of writes shares packets.
+                    for (; message != null; message = pending.poll()) {
+                        send(out, message);
+                    }
+                    out.flush();
+                }
+                if (overflowed) {
+                    LOGGER.warn("Disconnecting follower {} that is more than {} versions behind",
+                            socket.getRemoteSocketAddress(), MAX_QUEUED_VERSIONS);
+                }
+            } catch (IOException e) {
+                LOGGER.info("Follower {} disconnected: {}", socket.getRemoteSocketAddress(), e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                feed.unsubscribe(this);
+                followers.remove(this);
+                disconnect();
+            }
+        }
+
+        /**
+         * Subscribes right after the version of a fresh snapshot, so that the follower gets every change
+         * after it exactly once. Retries if a write slips in between and is already out of the feed.
+         */
+        private TaskSnapshot subscribeAtSnapshot(TaskChangeFeed feed) {
+            while (true) {
+                TaskSnapshot snapshot = repository.snapshot();
+                if (feed.subscribe(snapshot.getVersion(), this) == snapshot.getVersion()) {
+                    return snapshot;
+                }
+                feed.unsubscribe(this);
+            }
+        }
+
+        private void send(OutputStream out, ReplicationMessage message) throws IOException {
+            out.write(objectMapper.writeValueAsBytes(message));
+            out.write('\n');
+        }
+
+        void disconnect() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                LOGGER.debug("Failed to close follower socket", e);
+            }
+        }
+    }
+}
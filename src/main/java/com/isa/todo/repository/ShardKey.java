@@ -0,0 +1,16 @@
+package com.isa.todo.repository;
+
+/**
+ * What decides the shard file a task is stored in.
+ */
+public enum ShardKey {
+    /**
+     * A hash of the task id, spreading tasks evenly over {@code todo.repository.shards} files.
+     */
+    HASH,
+    /**
+     * The task's category: one file per {@link com.isa.todo.model.Category} plus one for tasks without a
+     * category. The configured number of shards is ignored.
+     */
+    CATEGORY
+}
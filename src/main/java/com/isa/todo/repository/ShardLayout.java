@@ -0,0 +1,134 @@
+package com.isa.todo.repository;
+
+import com.isa.todo.model.Category;
+import com.isa.todo.model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * How {@link JsonTaskRepository} splits tasks across files. A layout of one hash shard is the original
+ * single-file layout: the shard is the base file itself, e.g. {@code tasks.json}. Otherwise shard files are
+ * named after the base file and the shard, e.g. {@code tasks-3.json} or {@code tasks-work.json}.
+ * <p>
+ * The layout a data directory was written with is recorded in a manifest next to the shards, e.g.
+ * {@code tasks.shards}; a directory without one has the single-file layout.
+ */
+final class ShardLayout {
+    static final ShardLayout SINGLE = new ShardLayout(ShardKey.HASH, 1);
+    private static final Category[] CATEGORIES = Category.values();
+
+    private final ShardKey key;
+    private final int count;
+
+    private ShardLayout(ShardKey key, int count) {
+        this.key = key;
+        this.count = count;
+    }
+
+    static ShardLayout of(ShardKey key, int shards) {
+        if (key == ShardKey.CATEGORY) {
+            return new ShardLayout(key, CATEGORIES.length + 1);
+        }
+        if (shards < 1) {
+            throw new IllegalArgumentException("Number of shards must be at least 1 but was " + shards);
+        }
+        return new ShardLayout(key, shards);
+    }
+
+    int count() {
+        return count;
+    }
+
+    /**
+     * String hash codes are specified by the JLS, so a task keeps its shard across JVMs and restarts.
+     */
+    int shardOf(Task task) {
+        if (key == ShardKey.CATEGORY) {
+            return task.getCategory() == null ? CATEGORIES.length : task.getCategory().ordinal();
+        }
+        return Math.floorMod(task.getId().hashCode(), count);
+    }
+
+    /**
+     * @return the tasks of {@code snapshot} stored in {@code shard}, in task list order
+     */
+    List<Task> tasksOf(TaskSnapshot snapshot, int shard) {
+        if (key == ShardKey.CATEGORY && shard < CATEGORIES.length) {
+            return snapshot.findByCategory(CATEGORIES[shard]);
+        }
+        return snapshot.stream().filter(task -> shardOf(task) == shard).collect(Collectors.toList());
+    }
+
+    File fileFor(File base, int shard) {
+        if (count == 1) {
+            return base;
+        }
+        String name = key == ShardKey.CATEGORY
+                ? (shard < CATEGORIES.length ? CATEGORIES[shard].name().toLowerCase(Locale.ROOT) : "none")
+                : Integer.toString(shard);
+        return new File(base.getParentFile(), baseName(base) + "-" + name + extension(base));
+    }
+
+    static File manifestFor(File base) {
+        return new File(base.getParentFile(), baseName(base) + ".shards");
+    }
+
+    static ShardLayout read(File manifest) throws IOException {
+        if (!manifest.exists()) {
+            return SINGLE;
+        }
+        String[] parts = Files.readString(manifest.toPath(), StandardCharsets.UTF_8).trim().split(" ");
+        try {
+            return new ShardLayout(ShardKey.valueOf(parts[0].toUpperCase(Locale.ROOT)), Integer.parseInt(parts[1]));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Invalid shard manifest " + manifest, e);
+        }
+    }
+
+    void write(File manifest) throws IOException {
+        File tmp = new File(manifest.getPath() + ".tmp");
+        Files.writeString(tmp.toPath(), toString() + "\n", StandardCharsets.UTF_8);
+        TaskShard.replaceDurably(tmp, manifest);
+    }
+
+    private static String baseName(File base) {
+        String name = base.getName();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+
+    private static String extension(File base) {
+        String name = base.getName();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ShardLayout)) {
+            return false;
+        }
+        ShardLayout other = (ShardLayout) o;
+        return key == other.key && count == other.count;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(key, count);
+    }
+
+    @Override
+    public String toString() {
+        return key.name().toLowerCase(Locale.ROOT) + " " + count;
+    }
+}
@@ -0,0 +1,16 @@
+package com.isa.todo.repository;
+
+/**
+ * File format of the snapshot the task log is compacted into.
+ */
+public enum SnapshotFormat {
+    /**
+     * {@code tasks.json}, a JSON array of tasks.
+     */
+    JSON,
+    /**
+     * {@code tasks.bin}, read through a memory mapping; see {@link BinaryTaskFile}. It is decoded faster than
+     * {@code tasks.json} is parsed, but the tasks are still loaded into the in-memory indexes at startup.
+     */
+    BINARY
+}
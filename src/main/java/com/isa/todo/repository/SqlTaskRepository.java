@@ -0,0 +1,403 @@
+package com.isa.todo.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.isa.todo.metrics.Metrics;
+import com.isa.todo.model.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps tasks in an embedded SQL database instead of the heap, so the task list can grow past the memory of
+ * the JVM. It replaces {@link JsonTaskRepository} when {@code todo.repository.type} is {@code sql}, and
+ * {@code todo.repository.sql.url} picks the database, by default an H2 file in the data directory. A new
+ * database is seeded from the bundled {@code tasks.json}.
+ * <p>
+ * The table is indexed by id, and by category, priority and due date, each followed by the insertion
+ * sequence so that results come out in task list order and can be paged with keyset predicates. Snapshot
+ * queries run as SQL against those indexes, see {@link SqlTaskSnapshot}.
+ * <p>
+ * Snapshots rely on versioned rows: a row records the version that added the task and the one that removed
+ * or replaced it, and a snapshot only sees the rows alive at its version. Removed rows are purged once they
+ * are {@value #RETAINED_VERSIONS} versions old; querying a snapshot older than that throws. Writers are
+ * serialized and every change is one transaction, durable as soon as the database has logged it.
+ * <p>
+ * Like in {@link JsonTaskRepository}, the asynchronous variants of the mutations run on a single I/O thread
+ * with a bounded queue of {@value #IO_QUEUE_CAPACITY} changes, so callers never wait on the database.
+ */
+@Repository
+@ConditionalOnProperty(name = "todo.repository.type", havingValue = "sql")
+public class SqlTaskRepository implements TaskRepository {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SqlTaskRepository.class);
+    static final int RETAINED_VERSIONS = 10_000;
+    private static final int PURGE_INTERVAL = 1_000;
+    private static final int READ_CONNECTIONS = 8;
+    private static final int IO_QUEUE_CAPACITY = 10_000;
+    static final String COLUMNS = "id, description, category, priority, due_date, seq";
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS tasks (id VARCHAR(255) NOT NULL, created_version BIGINT NOT NULL,"
+                    + " deleted_version BIGINT, seq BIGINT NOT NULL, description VARCHAR, category VARCHAR(32),"
+                    + " priority INT NOT NULL, due_date DATE, PRIMARY KEY (id, created_version))",
+            "CREATE INDEX IF NOT EXISTS tasks_seq ON tasks (seq)",
+            "CREATE INDEX IF NOT EXISTS tasks_category ON tasks (category, seq)",
+            "CREATE INDEX IF NOT EXISTS tasks_priority ON tasks (priority, seq)",
+            "CREATE INDEX IF NOT EXISTS tasks_due_date ON tasks (due_date, seq)",
+            "CREATE INDEX IF NOT EXISTS tasks_urgency ON tasks (due_date, priority, seq)",
+            "CREATE INDEX IF NOT EXISTS tasks_deleted_version ON tasks (deleted_version)"
+    };
+
+    private final Metrics metrics;
+    private final Connection writer;
+    private final BlockingQueue<Connection> readers = new ArrayBlockingQueue<>(READ_CONNECTIONS);
+    private final TaskChangeFeed changeFeed;
+    private final ExecutorService ioExecutor;
+    private volatile long version;
+    // Rows removed up to this version are purged, so older snapshots can no longer be read.
+    private volatile long oldestVersion;
+    private volatile long lastModified = System.currentTimeMillis();
+    private long nextSeq;
+
+    @Autowired
+    public SqlTaskRepository(ObjectMapper objectMapper, Metrics metrics,
+                             @Value("${todo.repository.sql.url:jdbc:h2:file:./data/sql/tasks}") String url) {
+        this(objectMapper, metrics, url, new ClassPathResource("tasks.json"));
+    }
+
+    /**
+     * @param seed tasks to fill a new database with, or {@code null} to start it empty
+     */
+    SqlTaskRepository(ObjectMapper objectMapper, Metrics metrics, String url, Resource seed) {
+        this.metrics = metrics;
+        try {
+            writer = DriverManager.getConnection(url);
+            writer.setAutoCommit(false);
+            for (int i = 0; i < READ_CONNECTIONS; i++) {
+                readers.add(DriverManager.getConnection(url));
+            }
+            boolean created = createSchema();
+            try (Statement statement = writer.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT COALESCE(MAX(created_version), 0),"
+                         + " COALESCE(MAX(deleted_version), 0), COALESCE(MAX(seq), -1) FROM tasks")) {
+                result.next();
+                version = Math.max(result.getLong(1), result.getLong(2));
+                nextSeq = result.getLong(3) + 1;
+            }
+            // No snapshot survives a restart, so none of the removed rows can be read anymore.
+            try (Statement statement = writer.createStatement()) {
+                statement.executeUpdate("DELETE FROM tasks WHERE deleted_version IS NOT NULL");
+            }
+            writer.commit();
+            oldestVersion = version;
+            changeFeed = new TaskChangeFeed(version);
+            if (created && seed != null && seed.exists()) {
+                try (InputStream in = seed.getInputStream()) {
+                    add(List.of(objectMapper.readValue(in, Task[].class)));
+                }
+                LOGGER.info("Seeded {} with the bundled tasks", url);
+            }
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException("Failed to open task database " + url, e);
+        }
+        ioExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(IO_QUEUE_CAPACITY), runnable -> {
+            Thread thread = new Thread(runnable, "task-io");
+            thread.setDaemon(true);
+            return thread;
+        });
+        metrics.gauge("tasks", () -> snapshot().size());
+        metrics.gauge("snapshot_version", () -> version);
+        LOGGER.info("Opened task database {} at version {}", url, version);
+    }
+
+    /**
+     * @return whether the table did not exist yet
+     */
+    private boolean createSchema() throws SQLException {
+        boolean exists;
+        try (ResultSet tables = writer.getMetaData().getTables(null, null, "TASKS", null)) {
+            exists = tables.next();
+        }
+        try (Statement statement = writer.createStatement()) {
+            for (String sql : SCHEMA) {
+                statement.execute(sql);
+            }
+        }
+        return !exists;
+    }
+
+    @Override
+    public List<Task> getAllTasks() {
+        return metrics.time("repository.getAllTasks", () -> snapshot().toList());
+    }
+
+    @Override
+    public Task getTaskById(String id) {
+        return metrics.time("repository.getTaskById", () -> read(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT " + COLUMNS + " FROM tasks WHERE id = ? AND deleted_version IS NULL")) {
+                statement.setString(1, id);
+                try (ResultSet result = statement.executeQuery()) {
+                    return result.next() ? SqlTaskSnapshot.task(result) : null;
+                }
+            }
+        }));
+    }
+
+    @Override
+    public void addTask(Task task) {
+        metrics.time("repository.addTask", () -> add(List.of(task)));
+    }
+
+    @Override
+    public void addTasks(Collection<Task> tasks) {
+        if (!tasks.isEmpty()) {
+            metrics.time("repository.addTasks", () -> add(tasks));
+        }
+    }
+
+    /**
+     * Adds the tasks as one version. A task whose id is present replaces it in place: the old row is retired
+     * and the new one takes over its position in the task list.
+     */
+    private synchronized void add(Collection<Task> tasks) {
+        long newVersion = version + 1;
+        // Within a batch the last task with an id wins, at the position of the first one.
+        Map<String, Task> latest = new LinkedHashMap<>();
+        tasks.forEach(task -> latest.put(task.getId(), task));
+        try (PreparedStatement find = writer.prepareStatement("SELECT seq FROM tasks WHERE id = ? AND deleted_version IS NULL");
+             PreparedStatement retire = writer.prepareStatement(
+                     "UPDATE tasks SET deleted_version = ? WHERE id = ? AND deleted_version IS NULL");
+             PreparedStatement insert = writer.prepareStatement("INSERT INTO tasks (" + COLUMNS
+                     + ", created_version) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            long seq = nextSeq;
+            for (Task task : latest.values()) {
+                find.setString(1, task.getId());
+                Long previousSeq = null;
+                try (ResultSet result = find.executeQuery()) {
+                    if (result.next()) {
+                        previousSeq = result.getLong(1);
+                    }
+                }
+                if (previousSeq != null) {
+                    retire.setLong(1, newVersion);
+                    retire.setString(2, task.getId());
+                    retire.addBatch();
+                }
+                bind(insert, task, previousSeq != null ? previousSeq : seq++, newVersion);
+                insert.addBatch();
+            }
+            // Retire first, so the update cannot match the rows inserted below.
+            retire.executeBatch();
+            insert.executeBatch();
+            writer.commit();
+            nextSeq = seq;
+        } catch (SQLException e) {
+            rollback();
+            throw new RuntimeException("Failed to persist task change", e);
+        }
+        List<TaskChange> changes = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            changes.add(TaskChange.added(newVersion, task));
+        }
+        published(newVersion, changes);
+    }
+
+    private static void bind(PreparedStatement insert, Task task, long seq, long version) throws SQLException {
+        insert.setString(1, task.getId());
+        insert.setString(2, task.getDescription());
+        if (task.getCategory() == null) {
+            insert.setNull(3, Types.VARCHAR);
+        } else {
+            insert.setString(3, task.getCategory().name());
+        }
+        insert.setInt(4, task.getPriority());
+        insert.setObject(5, task.getDueDate(), Types.DATE);
+        insert.setLong(6, seq);
+        insert.setLong(7, version);
+    }
+
+    @Override
+    public void removeTaskById(String id) {
+        metrics.time("repository.removeTaskById", () -> remove(id));
+    }
+
+    @Override
+    public CompletableFuture<Void> addTaskAsync(Task task) {
+        return applyAsync("repository.addTaskAsync", () -> add(List.of(task)));
+    }
+
+    @Override
+    public CompletableFuture<Void> removeTaskByIdAsync(String id) {
+        return applyAsync("repository.removeTaskByIdAsync", () -> remove(id));
+    }
+
+    /**
+     * @return a future that fails with a {@link ChangeQueueFullException} if the queue of pending changes is full
+     */
+    private CompletableFuture<Void> applyAsync(String timer, Runnable change) {
+        long start = System.nanoTime();
+        try {
+            return CompletableFuture.runAsync(change, ioExecutor)
+                    .whenComplete((ignored, e) -> metrics.timer(timer).record(System.nanoTime() - start));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new ChangeQueueFullException(IO_QUEUE_CAPACITY, e));
+        }
+    }
+
+    private synchronized void remove(String id) {
+        long newVersion = version + 1;
+        try (PreparedStatement retire = writer.prepareStatement(
+                "UPDATE tasks SET deleted_version = ? WHERE id = ? AND deleted_version IS NULL")) {
+            retire.setLong(1, newVersion);
+            retire.setString(2, id);
+            if (retire.executeUpdate() == 0) {
+                writer.rollback();
+                return;
+            }
+            writer.commit();
+        } catch (SQLException e) {
+            rollback();
+            throw new RuntimeException("Failed to persist task change", e);
+        }
+        published(newVersion, List.of(TaskChange.removed(newVersion, id)));
+    }
+
+    /**
+     * Makes a committed version visible to new snapshots, then purges rows no retained snapshot can see.
+     */
+    private void published(long newVersion, List<TaskChange> changes) {
+        version = newVersion;
+        lastModified = System.currentTimeMillis();
+        if (newVersion % PURGE_INTERVAL == 0 && newVersion > RETAINED_VERSIONS) {
+            purge(newVersion - RETAINED_VERSIONS);
+        }
+        changeFeed.publish(changes);
+    }
+
+    private void purge(long upToVersion) {
+        oldestVersion = upToVersion;
+        try (PreparedStatement purge = writer.prepareStatement("DELETE FROM tasks WHERE deleted_version <= ?")) {
+            purge.setLong(1, upToVersion);
+            int purged = purge.executeUpdate();
+            writer.commit();
+            LOGGER.debug("Purged {} rows removed up to version {}", purged, upToVersion);
+        } catch (SQLException e) {
+            // The rows stay invisible to newer snapshots; the next purge takes them along.
+            rollback();
+            LOGGER.error("Failed to purge removed tasks", e);
+        }
+    }
+
+    private void rollback() {
+        try {
+            writer.rollback();
+        } catch (SQLException e) {
+            LOGGER.error("Failed to roll back task change", e);
+        }
+    }
+
+    @Override
+    public TaskSnapshot snapshot() {
+        return new SqlTaskSnapshot(this, version);
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public TaskChangeFeed changeFeed() {
+        return changeFeed;
+    }
+
+    /**
+     * @throws IllegalStateException if rows visible at {@code snapshotVersion} may have been purged
+     */
+    void checkRetained(long snapshotVersion) {
+        if (snapshotVersion < oldestVersion) {
+            throw new IllegalStateException("Snapshot of version " + snapshotVersion + " is more than "
+                    + RETAINED_VERSIONS + " versions old");
+        }
+    }
+
+    /**
+     * Runs {@code query} on one of the read connections, waiting for one to be free.
+     */
+    <T> T read(SqlFunction<Connection, T> query) {
+        Connection connection;
+        try {
+            connection = readers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a database connection", e);
+        }
+        try {
+            return query.apply(connection);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to query tasks", e);
+        } finally {
+            readers.add(connection);
+        }
+    }
+
+    @FunctionalInterface
+    interface SqlFunction<T, R> {
+        R apply(T value) throws SQLException;
+    }
+
+    @PreDestroy
+    public void close() {
+        // Outside the write lock, which queued changes still need to finish.
+        ioExecutor.shutdown();
+        try {
+            ioExecutor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            List<Connection> connections = new ArrayList<>(readers);
+            connections.add(writer);
+            for (Connection connection : connections) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    LOGGER.error("Failed to close task database connection", e);
+                }
+            }
+        }
+    }
+}
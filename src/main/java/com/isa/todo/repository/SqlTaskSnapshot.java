@@ -0,0 +1,388 @@
+package com.isa.todo.repository;
+
+import com.isa.todo.model.Category;
+import com.isa.todo.model.Task;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A snapshot of a {@link SqlTaskRepository}. It holds no tasks: every query runs as SQL restricted to the
+ * rows alive at its version, and is ordered by one of the indexes so the database can walk it instead of
+ * sorting. Scans are read in batches of {@value #BATCH_SIZE} rows, each starting after the sort key of the
+ * previous one, so streaming the whole table keeps neither the tasks nor a connection.
+ * <p>
+ * Page cursors have the same format as those of the in-memory snapshots.
+ */
+final class SqlTaskSnapshot implements TaskSnapshot {
+    private static final int BATCH_SIZE = 1_000;
+    private static final Category[] CATEGORIES = Category.values();
+    private static final Filter ALL = new Filter("TRUE");
+
+    private final SqlTaskRepository repository;
+    private final long version;
+    private volatile int size = -1;
+
+    SqlTaskSnapshot(SqlTaskRepository repository, long version) {
+        this.repository = repository;
+        this.version = version;
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public int size() {
+        if (size < 0) {
+            size = repository.read(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM tasks WHERE "
+                        + "created_version <= ? AND (deleted_version IS NULL OR deleted_version > ?)")) {
+                    statement.setLong(1, version);
+                    statement.setLong(2, version);
+                    try (ResultSet result = statement.executeQuery()) {
+                        result.next();
+                        return result.getInt(1);
+                    }
+                }
+            });
+            repository.checkRetained(version);
+        }
+        return size;
+    }
+
+    @Override
+    public Iterator<Task> iterator() {
+        return scan(ALL, TaskOrder.INSERTION);
+    }
+
+    @Override
+    public Stream<Task> stream(TaskOrder order) {
+        return stream(scan(ALL, order));
+    }
+
+    @Override
+    public Stream<Task> streamByCategory(Category category) {
+        return stream(scan(Filter.category(category), TaskOrder.INSERTION));
+    }
+
+    @Override
+    public Stream<Task> streamByPriority(int priority) {
+        return stream(scan(new Filter("priority = ?", priority), TaskOrder.INSERTION));
+    }
+
+    @Override
+    public Stream<Task> streamByDueDateBetween(LocalDate from, LocalDate to) {
+        return stream(scan(new Filter("due_date BETWEEN ? AND ?", from, to), TaskOrder.DUE_DATE));
+    }
+
+    @Override
+    public Stream<Task> streamByDescriptionContaining(String keyword) {
+        return stream(scan(Filter.containing(keyword.toLowerCase()), TaskOrder.INSERTION));
+    }
+
+    @Override
+    public List<Task> search(TaskQuery query) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        if (query.getCategory() != null) {
+            conditions.add("category = ?");
+            params.add(query.getCategory().name());
+        }
+        if (query.getMinPriority() != null) {
+            conditions.add("priority >= ?");
+            params.add(query.getMinPriority());
+        }
+        if (query.getMaxPriority() != null) {
+            conditions.add("priority <= ?");
+            params.add(query.getMaxPriority());
+        }
+        if (query.hasDueDateRange()) {
+            conditions.add("due_date IS NOT NULL");
+        }
+        if (query.getDueFrom() != null) {
+            conditions.add("due_date >= ?");
+            params.add(query.getDueFrom());
+        }
+        if (query.getDueTo() != null) {
+            conditions.add("due_date <= ?");
+            params.add(query.getDueTo());
+        }
+        if (query.getKeyword() != null) {
+            Filter containing = Filter.containing(query.getKeyword());
+            conditions.add(containing.sql);
+            Collections.addAll(params, containing.params);
+        }
+        Filter filter = conditions.isEmpty() ? ALL : new Filter(String.join(" AND ", conditions), params.toArray());
+        return tasks(select(filter, query.getOrder(), null, query.getLimit()));
+    }
+
+    @Override
+    public TaskPage page(TaskOrder order, String after, int limit) {
+        return page(ALL, order, after, limit);
+    }
+
+    @Override
+    public TaskPage pageByCategory(Category category, String after, int limit) {
+        return page(Filter.category(category), TaskOrder.INSERTION, after, limit);
+    }
+
+    @Override
+    public TaskPage pageByDescriptionContaining(String keyword, String after, int limit) {
+        return page(Filter.containing(keyword.toLowerCase()), TaskOrder.INSERTION, after, limit);
+    }
+
+    /**
+     * Reads one extra row to decide whether there is a next page.
+     */
+    private TaskPage page(Filter filter, TaskOrder order, String after, int limit) {
+        List<Row> rows = select(filter, order, after == null ? null : parseCursor(after, order), limit + 1);
+        if (rows.size() <= limit) {
+            return new TaskPage(tasks(rows), null);
+        }
+        rows = rows.subList(0, limit);
+        return new TaskPage(tasks(rows), cursor(rows.get(limit - 1), order));
+    }
+
+    /**
+     * One indexed lookup per category for its first task by priority.
+     */
+    @Override
+    public Map<Category, Optional<Task>> findHighestPriorityPerCategory() {
+        Map<Category, Optional<Task>> result = new EnumMap<>(Category.class);
+        for (Category category : CATEGORIES) {
+            List<Row> first = select(Filter.category(category), TaskOrder.PRIORITY, null, 1);
+            if (!first.isEmpty()) {
+                result.put(category, Optional.of(first.get(0).task));
+            }
+        }
+        return result;
+    }
+
+    private static Stream<Task> stream(Iterator<Task> tasks) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(tasks,
+                Spliterator.ORDERED | Spliterator.IMMUTABLE | Spliterator.NONNULL), false);
+    }
+
+    private static List<Task> tasks(List<Row> rows) {
+        return rows.stream().map(row -> row.task).collect(Collectors.toList());
+    }
+
+    /**
+     * Iterates all matching rows in {@code order}, fetching the next batch once the previous one is used up.
+     */
+    private Iterator<Task> scan(Filter filter, TaskOrder order) {
+        return new Iterator<>() {
+            private List<Row> batch;
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                if (batch == null) {
+                    batch = select(filter, order, null, BATCH_SIZE);
+                } else if (next == batch.size() && batch.size() == BATCH_SIZE) {
+                    batch = select(filter, order, key(batch.get(next - 1), order), BATCH_SIZE);
+                    next = 0;
+                }
+                return next < batch.size();
+            }
+
+            @Override
+            public Task next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return batch.get(next++).task;
+            }
+        };
+    }
+
+    /**
+     * @param after the sort key to start after, or {@code null} to start at the beginning
+     */
+    private List<Row> select(Filter filter, TaskOrder order, Object[] after, int limit) {
+        String[] columns = columns(order);
+        StringBuilder sql = new StringBuilder("SELECT ").append(SqlTaskRepository.COLUMNS).append(" FROM tasks WHERE ")
+                .append("created_version <= ? AND (deleted_version IS NULL OR deleted_version > ?) AND (")
+                .append(filter.sql).append(')');
+        List<Object> params = new ArrayList<>();
+        params.add(version);
+        params.add(version);
+        Collections.addAll(params, filter.params);
+        if (after != null) {
+            if (after[0] != null && columns.length > 1) {
+                // Redundant with the predicate below, but a plain range lets the database seek in the index.
+                sql.append(" AND ").append(columns[0]).append(" >= ?");
+                params.add(after[0]);
+            }
+            sql.append(" AND ");
+            appendAfter(sql, params, columns, after, 0);
+        }
+        sql.append(" ORDER BY ");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i == 0 ? "" : ", ").append(columns[i]).append(columns[i].equals("due_date") ? " NULLS FIRST" : "");
+        }
+        sql.append(" LIMIT ?");
+        params.add(limit);
+        List<Row> rows = repository.read(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+                for (int i = 0; i < params.size(); i++) {
+                    statement.setObject(i + 1, params.get(i));
+                }
+                List<Row> result = new ArrayList<>(Math.min(limit, BATCH_SIZE));
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        result.add(new Row(task(rs), rs.getLong("seq")));
+                    }
+                }
+                return result;
+            }
+        });
+        // Checked afterwards: a purge that started meanwhile may have removed rows this query needed.
+        repository.checkRetained(version);
+        return rows;
+    }
+
+    /**
+     * Appends the condition for rows sorting after {@code key} on {@code columns[i..]}. Missing due dates
+     * sort first, as in the in-memory indexes.
+     */
+    private static void appendAfter(StringBuilder sql, List<Object> params, String[] columns, Object[] key, int i) {
+        String column = columns[i];
+        if (i == columns.length - 1) {
+            sql.append(column).append(" > ?");
+            params.add(key[i]);
+            return;
+        }
+        if (key[i] == null) {
+            sql.append('(').append(column).append(" IS NOT NULL OR ").append(column).append(" IS NULL AND ");
+        } else {
+            sql.append('(').append(column).append(" > ? OR ").append(column).append(" = ? AND ");
+            params.add(key[i]);
+            params.add(key[i]);
+        }
+        appendAfter(sql, params, columns, key, i + 1);
+        sql.append(')');
+    }
+
+    /**
+     * @return the sort columns of {@code order}, matching the indexes of the table
+     */
+    private static String[] columns(TaskOrder order) {
+        switch (order) {
+            case DUE_DATE:
+                return new String[]{"due_date", "seq"};
+            case PRIORITY:
+                return new String[]{"priority", "seq"};
+            case URGENCY:
+                return new String[]{"due_date", "priority", "seq"};
+            default:
+                return new String[]{"seq"};
+        }
+    }
+
+    private static Object[] key(Row row, TaskOrder order) {
+        String[] columns = columns(order);
+        Object[] key = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            switch (columns[i]) {
+                case "due_date":
+                    key[i] = row.task.getDueDate();
+                    break;
+                case "priority":
+                    key[i] = row.task.getPriority();
+                    break;
+                default:
+                    key[i] = row.seq;
+            }
+        }
+        return key;
+    }
+
+    private static String cursor(Row row, TaskOrder order) {
+        Object[] key = key(row, order);
+        StringBuilder cursor = new StringBuilder();
+        for (int i = 0; i < key.length; i++) {
+            cursor.append(i == 0 ? "" : InMemoryTaskSnapshot.CURSOR_SEPARATOR).append(key[i] == null ? "" : key[i]);
+        }
+        return cursor.toString();
+    }
+
+    private static Object[] parseCursor(String cursor, TaskOrder order) {
+        String[] columns = columns(order);
+        String[] parts = InMemoryTaskSnapshot.cursorParts(cursor, columns.length);
+        Object[] key = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            switch (columns[i]) {
+                case "due_date":
+                    key[i] = InMemoryTaskSnapshot.parseDueDate(parts[i], cursor);
+                    break;
+                case "priority":
+                    key[i] = InMemoryTaskSnapshot.parsePriority(parts[i], cursor);
+                    break;
+                default:
+                    key[i] = InMemoryTaskSnapshot.parseSeq(parts[i], cursor);
+            }
+        }
+        return key;
+    }
+
+    static Task task(ResultSet result) throws SQLException {
+        String category = result.getString("category");
+        return new Task(result.getString("id"), result.getString("description"),
+                category == null ? null : Category.valueOf(category), result.getInt("priority"),
+                result.getObject("due_date", LocalDate.class));
+    }
+
+    private static final class Row {
+        final Task task;
+        final long seq;
+
+        Row(Task task, long seq) {
+            this.task = task;
+            this.seq = seq;
+        }
+    }
+
+    /**
+     * A condition on the table with its parameters.
+     */
+    private static final class Filter {
+        final String sql;
+        final Object[] params;
+
+        Filter(String sql, Object... params) {
+            this.sql = sql;
+            this.params = params;
+        }
+
+        static Filter category(Category category) {
+            return category == null ? new Filter("category IS NULL") : new Filter("category = ?", category.name());
+        }
+
+        /**
+         * Matches descriptions containing {@code lowerKeyword}; no index helps with that, so it filters a walk
+         * in task list order.
+         */
+        static Filter containing(String lowerKeyword) {
+            String pattern = lowerKeyword.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+            return new Filter("LOWER(description) LIKE ? ESCAPE '\\'", "%" + pattern + "%");
+        }
+    }
+}
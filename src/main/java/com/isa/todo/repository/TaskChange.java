@@ -0,0 +1,56 @@
+package com.isa.todo.repository;
+
+import com.isa.todo.model.Task;
+
+/**
+ * One task added or removed by the change that produced {@link #getVersion()}. A batch added at once
+ * produces one change per task, all with the same version.
+ */
+public final class TaskChange {
+    public enum Type {
+        /**
+         * The task was added, replacing any task with the same id.
+         */
+        ADDED,
+        REMOVED
+    }
+
+    private final long version;
+    private final Type type;
+    private final String id;
+    private final Task task;
+
+    private TaskChange(long version, Type type, String id, Task task) {
+        this.version = version;
+        this.type = type;
+        this.id = id;
+        this.task = task;
+    }
+
+    static TaskChange added(long version, Task task) {
+        return new TaskChange(version, Type.ADDED, task.getId(), task);
+    }
+
+    static TaskChange removed(long version, String id) {
+        return new TaskChange(version, Type.REMOVED, id, null);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the added task, or {@code null} for a removal
+     */
+    public Task getTask() {
+        return task;
+    }
+}
@@ -0,0 +1,85 @@
+package com.isa.todo.repository;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * The sequence of changes applied to a repository, published per version right after the version becomes
+ * visible. The most recent {@value #HISTORY_SIZE} changes are kept, so a subscriber can resume from the
+ * version it last saw as long as it is not too far behind.
+ * <p>
+ * Listeners are called on the writing thread while the repository's write lock is held. They must only
+ * hand the changes off, never block on I/O.
+ */
+public final class TaskChangeFeed {
+    static final int HISTORY_SIZE = 10_000;
+
+    private final Deque<List<TaskChange>> history = new ArrayDeque<>();
+    private final List<Consumer<List<TaskChange>>> listeners = new CopyOnWriteArrayList<>();
+    private int retained;
+    private long version;
+    private long oldestResumable;
+
+    TaskChangeFeed(long version) {
+        this.version = version;
+        this.oldestResumable = version;
+    }
+
+    /**
+     * @param changes every change of one version, which must be newer than the last published one
+     */
+    synchronized void publish(List<TaskChange> changes) {
+        version = changes.get(0).getVersion();
+        history.addLast(changes);
+        retained += changes.size();
+        while (retained > HISTORY_SIZE && history.size() > 1) {
+            List<TaskChange> evicted = history.removeFirst();
+            retained -= evicted.size();
+            oldestResumable = evicted.get(0).getVersion();
+        }
+        for (Consumer<List<TaskChange>> listener : listeners) {
+            listener.accept(changes);
+        }
+    }
+
+    /**
+     * Drops the history after the content was replaced as a whole; nobody can resume from before it.
+     */
+    synchronized void reset(long newVersion) {
+        history.clear();
+        retained = 0;
+        version = newVersion;
+        oldestResumable = newVersion;
+    }
+
+    /**
+     * Passes {@code listener} every version published after {@code fromVersion}, first the retained ones and
+     * then new ones as they are published, each exactly once and in order.
+     * <p>
+     * If the changes after {@code fromVersion} are no longer retained, or {@code fromVersion} is from the
+     * future, nothing is replayed and the listener starts from the current version instead. The caller can
+     * tell from the returned version and has to reload the full task list.
+     *
+     * @return the version the listener actually starts after
+     */
+    public synchronized long subscribe(long fromVersion, Consumer<List<TaskChange>> listener) {
+        if (fromVersion < oldestResumable || fromVersion > version) {
+            listeners.add(listener);
+            return version;
+        }
+        for (List<TaskChange> changes : history) {
+            if (changes.get(0).getVersion() > fromVersion) {
+                listener.accept(changes);
+            }
+        }
+        listeners.add(listener);
+        return fromVersion;
+    }
+
+    public void unsubscribe(Consumer<List<TaskChange>> listener) {
+        listeners.remove(listener);
+    }
+}
@@ -0,0 +1,38 @@
+package com.isa.todo.repository;
+
+import com.isa.todo.model.Category;
+import com.isa.todo.model.Task;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+
+/**
+ * A stored task together with its insertion sequence number, which fixes its position in the task list.
+ * The indexed fields are copied when the entry is created so that the index ordering stays consistent even
+ * if somebody later calls a setter on the task.
+ */
+final class TaskEntry {
+    static final Comparator<TaskEntry> BY_SEQ = Comparator.comparingLong(entry -> entry.seq);
+    static final Comparator<TaskEntry> BY_PRIORITY = Comparator.<TaskEntry>comparingInt(entry -> entry.priority)
+            .thenComparing(BY_SEQ);
+    static final Comparator<TaskEntry> BY_DUE_DATE = Comparator.<TaskEntry, LocalDate>comparing(entry -> entry.dueDate,
+            Comparator.nullsFirst(Comparator.naturalOrder())).thenComparing(BY_SEQ);
+    static final Comparator<TaskEntry> BY_URGENCY = Comparator.<TaskEntry, LocalDate>comparing(entry -> entry.dueDate,
+            Comparator.nullsFirst(Comparator.naturalOrder())).thenComparingInt(entry -> entry.priority).thenComparing(BY_SEQ);
+
+    final long seq;
+    final Task task;
+    final Category category;
+    final int priority;
+    final LocalDate dueDate;
+    final String lowerDescription;
+
+    TaskEntry(long seq, Task task) {
+        this.seq = seq;
+        this.task = task;
+        this.category = task.getCategory();
+        this.priority = task.getPriority();
+        this.dueDate = task.getDueDate();
+        this.lowerDescription = task.getDescription() == null ? null : task.getDescription().toLowerCase();
+    }
+}
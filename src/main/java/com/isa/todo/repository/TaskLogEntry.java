@@ -0,0 +1,59 @@
+package com.isa.todo.repository;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.isa.todo.model.Task;
+
+/**
+ * A single mutation appended to the write-ahead log that sits next to the JSON snapshot.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+class TaskLogEntry {
+    enum Operation {
+        ADD, REMOVE
+    }
+
+    private Operation op;
+    private Task task;
+    private String id;
+
+    TaskLogEntry() {
+    }
+
+    private TaskLogEntry(Operation op, Task task, String id) {
+        this.op = op;
+        this.task = task;
+        this.id = id;
+    }
+
+    static TaskLogEntry added(Task task) {
+        return new TaskLogEntry(Operation.ADD, task, null);
+    }
+
+    static TaskLogEntry removed(String id) {
+        return new TaskLogEntry(Operation.REMOVE, null, id);
+    }
+
+    public Operation getOp() {
+        return op;
+    }
+
+    public void setOp(Operation op) {
+        this.op = op;
+    }
+
+    public Task getTask() {
+        return task;
+    }
+
+    public void setTask(Task task) {
+        this.task = task;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+}
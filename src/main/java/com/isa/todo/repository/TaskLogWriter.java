@@ -0,0 +1,322 @@
+package com.isa.todo.repository;
+
+import com.isa.todo.metrics.Metrics;
+import com.isa.todo.metrics.TaskSaveEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends records to the task log and forces them to disk according to a {@link Durability}. Records are
+ * buffered in memory and written in batches: one write and one fsync cover every record appended since
+ * the previous flush, so under concurrency the number of fsyncs grows with time, not with the number of
+ * changes. Each append returns a future that completes once its batch is on disk.
+ * <p>
+ * Appends must be serialized by the caller, which keeps the records in the same order as the changes.
+ * <p>
+ * If a batch cannot be written, the file is cut back to where the batch started and the writer fails: the
+ * changes of that batch are already applied in memory, so accepting more would let memory and the log
+ * drift apart further. Every later append is rejected until a restart reloads the state from disk.
+ */
+final class TaskLogWriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskLogWriter.class);
+
+    private final File logFile;
+    private final File compactingLogFile;
+    private final ChannelOpener channelOpener;
+    private final Durability durability;
+    private final long intervalNanos;
+    private final Metrics metrics;
+    private final Object pendingLock = new Object();
+    private final Object ioLock = new Object();
+    private final Thread flusher;
+    // Guarded by pendingLock
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private int pendingRecords;
+    private CompletableFuture<Void> pendingDurable = new CompletableFuture<>();
+    private CompletableFuture<Void> lastBatch = CompletableFuture.completedFuture(null);
+    private long pendingSince;
+    private boolean flushRequested;
+    private boolean closed;
+    private IOException failure;
+    // Guarded by ioLock
+    private FileChannel channel;
+
+    /**
+     * @param interval for {@link Durability#GROUP} how long to wait for more records after the first one of
+     *                 a batch; for {@link Durability#PERIODIC} the time between flushes; unused for
+     *                 {@link Durability#SYNC}
+     */
+    TaskLogWriter(File logFile, File compactingLogFile, Durability durability, long interval, TimeUnit unit,
+                  Metrics metrics) {
+        this(logFile, compactingLogFile, durability, interval, unit, metrics, path -> FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+    }
+
+    TaskLogWriter(File logFile, File compactingLogFile, Durability durability, long interval, TimeUnit unit,
+                  Metrics metrics, ChannelOpener channelOpener) {
+        this.channelOpener = channelOpener;
+        this.logFile = logFile;
+        this.compactingLogFile = compactingLogFile;
+        this.durability = durability;
+        this.intervalNanos = unit.toNanos(interval);
+        this.metrics = metrics;
+        this.channel = openChannel();
+        if (durability == Durability.SYNC) {
+            flusher = null;
+        } else {
+            flusher = new Thread(this::runFlusher, "task-log-writer");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    /**
+     * Buffers one record. With {@link Durability#SYNC} it is on disk when this returns, and a failure to
+     * write it is thrown.
+     *
+     * @return a future completed once the record is on disk
+     */
+    CompletableFuture<Void> append(byte[] record) {
+        return append(List.of(record));
+    }
+
+    /**
+     * Buffers several records that always end up in the same batch, so they are written with one fsync.
+     */
+    CompletableFuture<Void> append(List<byte[]> records) {
+        CompletableFuture<Void> durable;
+        synchronized (pendingLock) {
+            if (closed) {
+                throw new IllegalStateException("Task log is closed");
+            }
+            if (failure != null) {
+                throw new IllegalStateException("Task log " + logFile + " failed; restart to recover", failure);
+            }
+            if (pending.size() == 0) {
+                pendingSince = System.nanoTime();
+                pendingLock.notifyAll();
+            }
+            for (byte[] record : records) {
+                pending.writeBytes(record);
+                pending.write('\n');
+            }
+            pendingRecords += records.size();
+            durable = pendingDurable;
+        }
+        if (durability == Durability.SYNC) {
+            flush();
+            try {
+                durable.join();
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Failed to append to task log", e.getCause());
+            }
+        }
+        return durable;
+    }
+
+    /**
+     * Asks the background writer to flush now instead of at the end of its window or interval.
+     *
+     * @return a future completed once every record appended so far is on disk
+     */
+    CompletableFuture<Void> requestFlush() {
+        synchronized (pendingLock) {
+            if (pending.size() == 0) {
+                return lastBatch;
+            }
+            flushRequested = true;
+            pendingLock.notifyAll();
+            return pendingDurable;
+        }
+    }
+
+    /**
+     * Flushes pending records into the current log, then moves it aside as the compacting log (appending
+     * to one left by a failed compaction) and starts a new one. Records already reported durable stay so
+     * through the move: appended ones are forced before the log they came from is deleted.
+     */
+    void rotate() throws IOException {
+        synchronized (ioLock) {
+            flush();
+            synchronized (pendingLock) {
+                if (failure != null) {
+                    throw new IOException("Task log " + logFile + " failed; not rotating it", failure);
+                }
+            }
+            channel.close();
+            if (compactingLogFile.exists()) {
+                try (FileChannel source = FileChannel.open(logFile.toPath(), StandardOpenOption.READ);
+                     FileChannel target = FileChannel.open(compactingLogFile.toPath(), StandardOpenOption.WRITE,
+                             StandardOpenOption.APPEND)) {
+                    long size = source.size();
+                    for (long position = 0; position < size; ) {
+                        position += source.transferTo(position, size - position, target);
+                    }
+                    target.force(true);
+                }
+                TaskShard.forceDirectoryOf(compactingLogFile);
+                Files.delete(logFile.toPath());
+            } else {
+                Files.move(logFile.toPath(), compactingLogFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            TaskShard.forceDirectoryOf(logFile);
+            channel = openChannel();
+        }
+    }
+
+    /**
+     * Stops the background writer after flushing everything appended so far.
+     */
+    void close() {
+        synchronized (pendingLock) {
+            closed = true;
+            pendingLock.notifyAll();
+        }
+        if (flusher != null) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (ioLock) {
+            flush();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to close task log", e);
+            }
+        }
+    }
+
+    private void runFlusher() {
+        while (true) {
+            synchronized (pendingLock) {
+                try {
+                    while (pending.size() == 0 && !closed) {
+                        pendingLock.wait();
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    long deadline = durability == Durability.GROUP ? pendingSince + intervalNanos
+                            : System.nanoTime() + intervalNanos;
+                    long remaining = deadline - System.nanoTime();
+                    while (remaining > 0 && !flushRequested && !closed) {
+                        TimeUnit.NANOSECONDS.timedWait(pendingLock, remaining);
+                        remaining = deadline - System.nanoTime();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            flush();
+        }
+    }
+
+    /**
+     * Writes and forces the pending batch. Batches are taken and written under one lock, so they reach the
+     * file in append order; appenders only contend on the short swap of the buffer.
+     */
+    private void flush() {
+        synchronized (ioLock) {
+            byte[] batch;
+            int records;
+            CompletableFuture<Void> durable;
+            synchronized (pendingLock) {
+                flushRequested = false;
+                if (pending.size() == 0) {
+                    return;
+                }
+                batch = pending.toByteArray();
+                pending = new ByteArrayOutputStream(Math.min(batch.length, 1 << 16));
+                records = pendingRecords;
+                pendingRecords = 0;
+                durable = pendingDurable;
+                pendingDurable = new CompletableFuture<>();
+                lastBatch = durable;
+            }
+            TaskSaveEvent event = new TaskSaveEvent();
+            event.begin();
+            long start = System.nanoTime();
+            long sizeBefore = -1;
+            try {
+                sizeBefore = channel.size();
+                ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+                durable.complete(null);
+            } catch (IOException e) {
+                LOGGER.error("Failed to write task log {}; rejecting further changes until restart", logFile, e);
+                discardFrom(sizeBefore);
+                fail(e);
+                durable.completeExceptionally(e);
+            } finally {
+                metrics.timer("repository.flush").record(System.nanoTime() - start);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.file = logFile.getPath();
+                    event.kind = TaskSaveEvent.LOG;
+                    event.records = records;
+                    event.bytesWritten = batch.length;
+                    event.commit();
+                }
+            }
+        }
+    }
+
+    /**
+     * Cuts off whatever part of a failed batch reached the file, so that it cannot be replayed, nor end up
+     * as a torn record in the middle of the log.
+     */
+    private void discardFrom(long size) {
+        try {
+            if (size >= 0 && channel.size() > size) {
+                channel.truncate(size);
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to discard partially written batch from {}", logFile, e);
+        }
+    }
+
+    /**
+     * Rejects from now on every append, and fails the records appended since the failed batch was taken.
+     */
+    private void fail(IOException e) {
+        synchronized (pendingLock) {
+            failure = e;
+            pending = new ByteArrayOutputStream();
+            pendingRecords = 0;
+            pendingDurable.completeExceptionally(e);
+            pendingDurable = new CompletableFuture<>();
+        }
+    }
+
+    private FileChannel openChannel() {
+        try {
+            return channelOpener.open(logFile.toPath());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open task log", e);
+        }
+    }
+
+    interface ChannelOpener {
+        FileChannel open(Path path) throws IOException;
+    }
+}
@@ -0,0 +1,12 @@
+package com.isa.todo.repository;
+
+/**
+ * Orderings a {@link TaskSnapshot} can be paged through. Ties are always broken by insertion order.
+ */
+public enum TaskOrder {
+    INSERTION, DUE_DATE, PRIORITY,
+    /**
+     * Due date first, then priority: the most urgent task comes first.
+     */
+    URGENCY
+}
@@ -0,0 +1,60 @@
+package com.isa.todo.repository;
+
+import com.isa.todo.model.Task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated query. The cursor is opaque: it encodes the sort key of the last task on
+ * the page and is handed back to fetch the tasks that follow it, so a page costs the same wherever it is.
+ * Pages are read-only, as the query cache hands the same page to every request asking for it.
+ */
+public class TaskPage {
+    private final List<Task> tasks;
+    private final String nextCursor;
+
+    public TaskPage(List<Task> tasks, String nextCursor) {
+        this.tasks = Collections.unmodifiableList(tasks);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Task> getTasks() {
+        return tasks;
+    }
+
+    /**
+     * @return the cursor of the following page, or {@code null} if this is the last one
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    /**
+     * Pages through an already ordered sequence using task ids as cursors. It has to skip everything before
+     * the cursor, so it is only the fallback for snapshots without indexes.
+     */
+    static TaskPage afterId(Iterator<Task> tasks, String afterId, int limit) {
+        if (afterId != null) {
+            boolean found = false;
+            while (!found && tasks.hasNext()) {
+                found = tasks.next().getId().equals(afterId);
+            }
+        }
+        List<Task> page = new ArrayList<>(Math.min(limit, 256));
+        while (tasks.hasNext()) {
+            Task task = tasks.next();
+            if (page.size() == limit) {
+                return new TaskPage(page, page.get(page.size() - 1).getId());
+            }
+            page.add(task);
+        }
+        return new TaskPage(page, null);
+    }
+}
@@ -0,0 +1,134 @@
+package com.isa.todo.repository;
+
+import com.isa.todo.model.Category;
+import com.isa.todo.model.Task;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * A combination of search criteria for {@link TaskSnapshot#search}. Every criterion is optional: a
+ * {@code null} bound leaves that side of its range open, and a query without criteria matches every task.
+ * Ranges are inclusive, and tasks without a due date never match a due date range.
+ */
+public final class TaskQuery {
+    private final Category category;
+    private final Integer minPriority;
+    private final Integer maxPriority;
+    private final LocalDate dueFrom;
+    private final LocalDate dueTo;
+    private final String keyword;
+    private final TaskOrder order;
+    private final int limit;
+
+    /**
+     * @param keyword text the description must contain, ignoring case; blank means no keyword
+     * @param order   the order of the results, {@link TaskOrder#INSERTION} when {@code null}
+     * @param limit   the maximum number of results, at least 1
+     */
+    public TaskQuery(Category category, Integer minPriority, Integer maxPriority, LocalDate dueFrom, LocalDate dueTo,
+                     String keyword, TaskOrder order, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1 but was " + limit);
+        }
+        this.category = category;
+        this.minPriority = minPriority;
+        this.maxPriority = maxPriority;
+        this.dueFrom = dueFrom;
+        this.dueTo = dueTo;
+        this.keyword = keyword == null || keyword.isBlank() ? null : keyword.toLowerCase();
+        this.order = order == null ? TaskOrder.INSERTION : order;
+        this.limit = limit;
+    }
+
+    public Category getCategory() {
+        return category;
+    }
+
+    public Integer getMinPriority() {
+        return minPriority;
+    }
+
+    public Integer getMaxPriority() {
+        return maxPriority;
+    }
+
+    public LocalDate getDueFrom() {
+        return dueFrom;
+    }
+
+    public LocalDate getDueTo() {
+        return dueTo;
+    }
+
+    /**
+     * @return the keyword already lowercased, or {@code null}
+     */
+    public String getKeyword() {
+        return keyword;
+    }
+
+    public TaskOrder getOrder() {
+        return order;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    boolean hasPriorityRange() {
+        return minPriority != null || maxPriority != null;
+    }
+
+    boolean hasDueDateRange() {
+        return dueFrom != null || dueTo != null;
+    }
+
+    public boolean matches(Task task) {
+        return matches(task.getCategory(), task.getPriority(), task.getDueDate(),
+                task.getDescription() == null ? null : task.getDescription().toLowerCase());
+    }
+
+    boolean matches(TaskEntry entry) {
+        return matches(entry.category, entry.priority, entry.dueDate, entry.lowerDescription);
+    }
+
+    private boolean matches(Category category, int priority, LocalDate dueDate, String lowerDescription) {
+        return (this.category == null || this.category == category)
+                && (minPriority == null || priority >= minPriority)
+                && (maxPriority == null || priority <= maxPriority)
+                && (!hasDueDateRange() || dueDate != null
+                && (dueFrom == null || !dueDate.isBefore(dueFrom)) && (dueTo == null || !dueDate.isAfter(dueTo)))
+                && (keyword == null || lowerDescription != null && lowerDescription.contains(keyword));
+    }
+
+    /**
+     * Queries are used as query cache keys, so equal criteria have to compare equal.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TaskQuery)) {
+            return false;
+        }
+        TaskQuery other = (TaskQuery) o;
+        return limit == other.limit && category == other.category && order == other.order
+                && Objects.equals(minPriority, other.minPriority) && Objects.equals(maxPriority, other.maxPriority)
+                && Objects.equals(dueFrom, other.dueFrom) && Objects.equals(dueTo, other.dueTo)
+                && Objects.equals(keyword, other.keyword);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(category, minPriority, maxPriority, dueFrom, dueTo, keyword, order, limit);
+    }
+
+    @Override
+    public String toString() {
+        return "TaskQuery{category=" + category + ", priority=" + minPriority + ".." + maxPriority
+                + ", dueDate=" + dueFrom + ".." + dueTo + ", keyword=" + keyword + ", order=" + order
+                + ", limit=" + limit + "}";
+    }
+}
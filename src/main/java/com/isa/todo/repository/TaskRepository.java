@@ -2,15 +2,73 @@ package com.isa.todo.repository;
 
 import com.isa.todo.model.Task;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface TaskRepository {
     List<Task> getAllTasks();
 
     void addTask(Task task);
 
+    /**
+     * Adds all tasks as one change. Persistent repositories write the whole batch with a single flush.
+     */
+    default void addTasks(Collection<Task> tasks) {
+        tasks.forEach(this::addTask);
+    }
+
     void removeTaskById(String id);
 
+    /**
+     * Adds a task without blocking the caller on I/O. The future completes once the task is visible and as
+     * durable as {@link #addTask} would have made it. Repositories that do not persist add it right away.
+     */
+    default CompletableFuture<Void> addTaskAsync(Task task) {
+        addTask(task);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Removes a task without blocking the caller on I/O, like {@link #addTaskAsync}.
+     */
+    default CompletableFuture<Void> removeTaskByIdAsync(String id) {
+        removeTaskById(id);
+        return CompletableFuture.completedFuture(null);
+    }
+
     Task getTaskById(String id);
 
+    /**
+     * @return an immutable view of all tasks; cheap to obtain and safe to iterate while writes continue
+     */
+    TaskSnapshot snapshot();
+
+    /**
+     * @return a counter bumped by every add and remove; it never decreases while the application runs, but
+     * starts over after a restart
+     */
+    default long getVersion() {
+        return snapshot().getVersion();
+    }
+
+    /**
+     * @return when the content last changed, in epoch milliseconds; the time it was loaded if it has not
+     * changed since
+     */
+    long getLastModified();
+
+    /**
+     * @return the feed every add and remove is published to once it is visible in {@link #snapshot()}
+     */
+    TaskChangeFeed changeFeed();
+
+    /**
+     * @return a future completed once every change made before the call is durable; repositories that
+     * do not persist complete it right away
+     */
+    default CompletableFuture<Void> flush() {
+        return CompletableFuture.completedFuture(null);
+    }
+
 }
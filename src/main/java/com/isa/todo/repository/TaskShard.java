@@ -0,0 +1,269 @@
+package com.isa.todo.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.isa.todo.metrics.Metrics;
+import com.isa.todo.metrics.TaskLoadEvent;
+import com.isa.todo.metrics.TaskSaveEvent;
+import com.isa.todo.model.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The files of one shard of a {@link JsonTaskRepository}: a snapshot, the append-only log of changes made
+ * since, and while a compaction runs the rotated log. Shards are independent of each other, so a change
+ * only ever touches the files of its own shard.
+ * <p>
+ * Loading and writing snapshots is safe from any thread; the log writer and the counters are guarded by
+ * the repository's write lock.
+ */
+final class TaskShard {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskShard.class);
+
+    private final ObjectMapper objectMapper;
+    private final JsonTaskFile jsonFile;
+    private final SnapshotFormat snapshotFormat;
+    final File snapshotFile;
+    final File logFile;
+    final File compactingLogFile;
+    TaskLogWriter logWriter;
+    int logRecords;
+    boolean compactionScheduled;
+
+    TaskShard(ObjectMapper objectMapper, File snapshotFile, SnapshotFormat snapshotFormat) {
+        this.objectMapper = objectMapper;
+        this.jsonFile = new JsonTaskFile(objectMapper);
+        this.snapshotFormat = snapshotFormat;
+        this.snapshotFile = snapshotFile;
+        this.logFile = new File(snapshotFile.getPath() + ".log");
+        this.compactingLogFile = new File(snapshotFile.getPath() + ".log.compacting");
+    }
+
+    /**
+     * Reads the snapshot and replays the logs on top of it, recorded as a {@link TaskLoadEvent}.
+     */
+    Map<String, Task> load() throws IOException {
+        TaskLoadEvent event = new TaskLoadEvent();
+        event.begin();
+        Map<String, Task> tasksById = new LinkedHashMap<>();
+        boolean imported = false;
+        if (snapshotFile.exists()) {
+            readSnapshot(tasksById);
+        } else if (snapshotFormat == SnapshotFormat.BINARY) {
+            imported = importJson(tasksById);
+        }
+        int fromSnapshot = tasksById.size();
+        boolean interruptedCompaction = compactingLogFile.exists();
+        truncateTornTail(logFile);
+        int replayed = replayLog(compactingLogFile, tasksById) + replayLog(logFile, tasksById);
+        event.end();
+        if (event.shouldCommit()) {
+            // Before the logs are folded into the snapshot below, which deletes them.
+            event.file = snapshotFile.getPath();
+            event.format = snapshotFormat.name();
+            event.scanned = fromSnapshot + replayed;
+            event.tasks = tasksById.size();
+            event.bytesRead = (imported ? jsonFileFor(snapshotFile) : snapshotFile).length()
+                    + compactingLogFile.length() + logFile.length();
+            event.commit();
+        }
+        LOGGER.debug("Loaded {} tasks from {}, replayed {} log records", tasksById.size(), snapshotFile, replayed);
+        if (interruptedCompaction || imported) {
+            // A previous compaction did not finish, or the tasks were just imported; fold everything into
+            // the snapshot before accepting writes.
+            replaceWith(tasksById.values(), tasksById.size());
+        } else {
+            logRecords = replayed;
+        }
+        return tasksById;
+    }
+
+    private void readSnapshot(Map<String, Task> tasksById) throws IOException {
+        if (snapshotFormat == SnapshotFormat.BINARY) {
+            // Decodes every record; the mapping only makes reading the file faster, reads are not served from it.
+            long start = System.nanoTime();
+            BinaryTaskFile.map(snapshotFile).forEach(task -> tasksById.put(task.getId(), task));
+            LOGGER.info("Read {} tasks from {} in {} ms", tasksById.size(), snapshotFile,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } else {
+            jsonFile.read(snapshotFile, task -> tasksById.put(task.getId(), task));
+        }
+    }
+
+    /**
+     * Switching to the binary format starts from the JSON snapshot and its log, which are left in place as
+     * an export; the result is written as the first binary snapshot right away.
+     */
+    private boolean importJson(Map<String, Task> tasksById) throws IOException {
+        File json = jsonFileFor(snapshotFile);
+        if (!json.exists()) {
+            return false;
+        }
+        jsonFile.read(json, task -> tasksById.put(task.getId(), task));
+        replayLog(new File(json.getPath() + ".log"), tasksById);
+        LOGGER.info("Imported {} tasks from {} into {}", tasksById.size(), json, snapshotFile);
+        return true;
+    }
+
+    static File binaryFileFor(File jsonFile) {
+        return new File(jsonFile.getParentFile(), jsonFile.getName().replaceFirst("\\.json$", "") + ".bin");
+    }
+
+    private static File jsonFileFor(File binaryFile) {
+        return new File(binaryFile.getParentFile(), binaryFile.getName().replaceFirst("\\.bin$", "") + ".json");
+    }
+
+    /**
+     * Cuts the log back to its last complete record. A crash mid-append can leave part of a record without
+     * its newline; it was never acknowledged, and the next append must not be glued onto it.
+     */
+    private static void truncateTornTail(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long end = 0;
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            for (long position = size; position > 0 && end == 0; ) {
+                int length = (int) Math.min(buffer.capacity(), position);
+                position -= length;
+                buffer.clear().limit(length);
+                while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+                    // Read the whole chunk.
+                }
+                for (int i = length - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        end = position + i + 1;
+                        break;
+                    }
+                }
+            }
+            if (end < size) {
+                LOGGER.warn("Truncating incomplete record at the end of {} from {} to {} bytes", file, size, end);
+                channel.truncate(end);
+                channel.force(true);
+            }
+        }
+    }
+
+    private int replayLog(File file, Map<String, Task> tasksById) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        int replayed = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            while (line != null) {
+                String next = reader.readLine();
+                if (!line.isBlank()) {
+                    TaskLogEntry entry;
+                    try {
+                        entry = objectMapper.readValue(line, TaskLogEntry.class);
+                    } catch (JsonProcessingException e) {
+                        if (next != null) {
+                            throw e;
+                        }
+                        // Only the last record can be torn by a crash mid-append; it was never acknowledged.
+                        LOGGER.warn("Ignoring incomplete record at the end of {}", file);
+                        break;
+                    }
+                    if (entry.getOp() == TaskLogEntry.Operation.ADD) {
+                        tasksById.put(entry.getTask().getId(), entry.getTask());
+                    } else {
+                        tasksById.remove(entry.getId());
+                    }
+                    replayed++;
+                }
+                line = next;
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Makes {@code tasks} the whole content of this shard: writes them as the snapshot and drops both logs.
+     */
+    void replaceWith(Iterable<Task> tasks, int size) throws IOException {
+        writeSnapshot(tasks, size);
+        Files.deleteIfExists(compactingLogFile.toPath());
+        Files.deleteIfExists(logFile.toPath());
+        logRecords = 0;
+    }
+
+    void openLog(Durability durability, long flushIntervalMs, Metrics metrics) {
+        logWriter = new TaskLogWriter(logFile, compactingLogFile, durability, flushIntervalMs, TimeUnit.MILLISECONDS, metrics);
+    }
+
+    void rotateLog() {
+        try {
+            logWriter.rotate();
+            logRecords = 0;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to rotate task log " + logFile, e);
+        }
+    }
+
+    /**
+     * Writes into a temporary file that then replaces the snapshot, so a crash mid-write never leaves a
+     * truncated snapshot behind. It is on disk when this returns, so the logs it covers may be deleted.
+     * Recorded as a {@link TaskSaveEvent}.
+     */
+    void writeSnapshot(Iterable<Task> tasks, int size) throws IOException {
+        TaskSaveEvent event = new TaskSaveEvent();
+        event.begin();
+        File tmp = new File(snapshotFile.getPath() + ".tmp");
+        if (snapshotFormat == SnapshotFormat.BINARY) {
+            BinaryTaskFile.write(tmp, tasks, size);
+        } else {
+            jsonFile.write(tmp, tasks, size);
+        }
+        replaceDurably(tmp, snapshotFile);
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = snapshotFile.getPath();
+            event.kind = TaskSaveEvent.SNAPSHOT;
+            event.records = size;
+            event.bytesWritten = snapshotFile.length();
+            event.commit();
+        }
+    }
+
+    /**
+     * Renames {@code source} over {@code target} once its content is on disk, then forces the directory so
+     * the rename itself survives a power loss.
+     */
+    static void replaceDurably(File source, File target) throws IOException {
+        try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectoryOf(target);
+    }
+
+    /**
+     * Makes renames, creations and deletions of files next to {@code file} so far survive a power loss.
+     */
+    static void forceDirectoryOf(File file) {
+        File directory = file.getAbsoluteFile().getParentFile();
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Some platforms, Windows among them, cannot open a directory; changes are as durable as they make them.
+            LOGGER.debug("Could not force directory {}", directory, e);
+        }
+    }
+}
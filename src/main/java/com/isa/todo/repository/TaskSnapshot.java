@@ -0,0 +1,215 @@
+package com.isa.todo.repository;
+
+import com.isa.todo.model.Category;
+import com.isa.todo.model.Task;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An immutable view of the repository contents at one version. It never changes once obtained, so it can be
+ * iterated from any thread while writers keep modifying the repository.
+ * <p>
+ * The query methods scan all tasks by default; implementations that keep indexes override them so the cost
+ * is proportional to the size of the result. Results always keep the task list order.
+ */
+public interface TaskSnapshot extends Iterable<Task> {
+
+    /**
+     * @return the number of mutations applied to the repository when this snapshot was taken
+     */
+    long getVersion();
+
+    int size();
+
+    @Override
+    default Spliterator<Task> spliterator() {
+        return Spliterators.spliterator(iterator(), size(), Spliterator.ORDERED | Spliterator.IMMUTABLE | Spliterator.NONNULL);
+    }
+
+    default Stream<Task> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Returns a view of this snapshot whose scanning queries run as parallel streams, splitting the tasks
+     * across the fork-join pool the query is called from. Results are the same as in sequential mode, in
+     * the same order. Snapshots that cannot split their tasks efficiently return themselves.
+     */
+    default TaskSnapshot parallel() {
+        return this;
+    }
+
+    default List<Task> toList() {
+        List<Task> tasks = new ArrayList<>(size());
+        forEach(tasks::add);
+        return tasks;
+    }
+
+    /**
+     * @return all tasks in the given order, produced lazily while the stream is consumed
+     */
+    default Stream<Task> stream(TaskOrder order) {
+        Stream<Task> tasks = stream();
+        if (order == TaskOrder.DUE_DATE) {
+            tasks = tasks.sorted(Comparator.comparing(Task::getDueDate, Comparator.nullsFirst(Comparator.naturalOrder())));
+        } else if (order == TaskOrder.PRIORITY) {
+            tasks = tasks.sorted(Comparator.comparingInt(Task::getPriority));
+        } else if (order == TaskOrder.URGENCY) {
+            tasks = tasks.sorted(Comparator.comparing(Task::getDueDate, Comparator.nullsFirst(Comparator.<LocalDate>naturalOrder()))
+                    .thenComparingInt(Task::getPriority));
+        }
+        return tasks;
+    }
+
+    /*
+     * The streamBy methods are the lazy form of the findBy methods below, for results too large to collect
+     * into a list first.
+     */
+
+    default Stream<Task> streamByCategory(Category category) {
+        return stream().filter(task -> task.getCategory() == category);
+    }
+
+    default Stream<Task> streamByPriority(int priority) {
+        return stream().filter(task -> task.getPriority() == priority);
+    }
+
+    /**
+     * @return tasks due between {@code from} and {@code to}, both inclusive, ordered by due date
+     */
+    default Stream<Task> streamByDueDateBetween(LocalDate from, LocalDate to) {
+        return stream()
+                .filter(task -> task.getDueDate() != null
+                        && !task.getDueDate().isBefore(from) && !task.getDueDate().isAfter(to))
+                .sorted(Comparator.comparing(Task::getDueDate));
+    }
+
+    /**
+     * @return tasks whose description contains {@code keyword}, ignoring case
+     */
+    default Stream<Task> streamByDescriptionContaining(String keyword) {
+        String lowerKeyword = keyword.toLowerCase();
+        return stream()
+                .filter(task -> task.getDescription() != null && task.getDescription().toLowerCase().contains(lowerKeyword));
+    }
+
+    /**
+     * Returns the first {@link TaskQuery#getLimit()} tasks matching every criterion of {@code query}, in the
+     * query's order. Indexed snapshots plan which index to walk; this default filters a full walk.
+     */
+    default List<Task> search(TaskQuery query) {
+        return stream(query.getOrder()).filter(query::matches).limit(query.getLimit()).collect(Collectors.toList());
+    }
+
+    default List<Task> findByCategory(Category category) {
+        return streamByCategory(category).collect(Collectors.toList());
+    }
+
+    default List<Task> findByPriority(int priority) {
+        return streamByPriority(priority).collect(Collectors.toList());
+    }
+
+    /**
+     * @return tasks due between {@code from} and {@code to}, both inclusive, ordered by due date
+     */
+    default List<Task> findByDueDateBetween(LocalDate from, LocalDate to) {
+        return streamByDueDateBetween(from, to).collect(Collectors.toList());
+    }
+
+    /**
+     * @return tasks whose description contains {@code keyword}, ignoring case
+     */
+    default List<Task> findByDescriptionContaining(String keyword) {
+        return streamByDescriptionContaining(keyword).collect(Collectors.toList());
+    }
+
+    /**
+     * @return non-empty categories mapped to their tasks
+     */
+    default Map<Category, List<Task>> groupByCategory() {
+        return stream()
+                .filter(task -> Objects.nonNull(task.getCategory()))
+                .collect(Collectors.groupingBy(Task::getCategory, () -> new EnumMap<>(Category.class), Collectors.toList()));
+    }
+
+    /**
+     * @return priorities that have tasks, in ascending order, mapped to their tasks
+     */
+    default Map<Integer, List<Task>> groupByPriority() {
+        return stream()
+                .collect(Collectors.groupingBy(Task::getPriority, TreeMap::new, Collectors.toList()));
+    }
+
+    /**
+     * @return non-empty categories mapped to their task with the lowest priority number, the first added on ties
+     */
+    default Map<Category, Optional<Task>> findHighestPriorityPerCategory() {
+        return stream()
+                .filter(task -> Objects.nonNull(task.getCategory()))
+                .collect(Collectors.groupingBy(Task::getCategory, () -> new EnumMap<>(Category.class),
+                        Collectors.minBy(Comparator.comparingInt(Task::getPriority))));
+    }
+
+    /**
+     * Returns up to {@code limit} tasks in the given order that follow the task {@code after} points to.
+     *
+     * @param after a cursor from a previous {@link TaskPage}, or {@code null} for the first page
+     */
+    default TaskPage page(TaskOrder order, String after, int limit) {
+        return TaskPage.afterId(stream(order).iterator(), after, limit);
+    }
+
+    /**
+     * @return the first {@code limit} tasks in the given order
+     */
+    default List<Task> first(TaskOrder order, int limit) {
+        return page(order, null, limit).getTasks();
+    }
+
+    default TaskPage pageByCategory(Category category, String after, int limit) {
+        return TaskPage.afterId(findByCategory(category).iterator(), after, limit);
+    }
+
+    default TaskPage pageByDescriptionContaining(String keyword, String after, int limit) {
+        return TaskPage.afterId(findByDescriptionContaining(keyword).iterator(), after, limit);
+    }
+
+    /**
+     * Wraps a list that is not going to change anymore, for repositories without their own snapshot support.
+     */
+    static TaskSnapshot of(long version, Collection<Task> tasks) {
+        List<Task> copy = Collections.unmodifiableList(new ArrayList<>(tasks));
+        return new TaskSnapshot() {
+            @Override
+            public long getVersion() {
+                return version;
+            }
+
+            @Override
+            public int size() {
+                return copy.size();
+            }
+
+            @Override
+            public Iterator<Task> iterator() {
+                return copy.iterator();
+            }
+        };
+    }
+}
@@ -0,0 +1,53 @@
+package com.isa.todo.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.isa.todo.model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts a task snapshot between JSON and the binary format. The direction follows the input file name:
+ * <pre>
+ * java -cp ToDo-1.0-jar-with-dependencies.jar com.isa.todo.repository.TaskSnapshotConverter tasks.json tasks.bin
+ * java -cp ToDo-1.0-jar-with-dependencies.jar com.isa.todo.repository.TaskSnapshotConverter tasks.bin tasks.json
+ * </pre>
+ * Only the snapshot is converted; stop the application first so its log has been folded in or is replayed
+ * against the snapshot it belongs to.
+ */
+public final class TaskSnapshotConverter {
+
+    private TaskSnapshotConverter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: TaskSnapshotConverter <input.json|input.bin> <output>");
+            System.exit(2);
+        }
+        int converted = convert(new File(args[0]), new File(args[1]), new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS));
+        System.out.println("Converted " + converted + " tasks from " + args[0] + " to " + args[1]);
+    }
+
+    /**
+     * @return the number of converted tasks
+     */
+    static int convert(File input, File output, ObjectMapper objectMapper) throws IOException {
+        JsonTaskFile jsonFile = new JsonTaskFile(objectMapper);
+        if (input.getName().endsWith(".bin")) {
+            TaskSnapshot snapshot = BinaryTaskFile.map(input);
+            jsonFile.write(output, snapshot, snapshot.size());
+            return snapshot.size();
+        }
+        List<Task> tasks = new ArrayList<>();
+        jsonFile.read(input, tasks::add);
+        BinaryTaskFile.write(output, tasks, tasks.size());
+        return tasks.size();
+    }
+}
@@ -0,0 +1,118 @@
+package com.isa.todo.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable inverted index from every three-character sequence of a lowercased description to the tasks
+ * containing it. A substring search looks up the posting lists of the keyword's trigrams, walks the
+ * shortest one and verifies each candidate, instead of lowercasing and scanning every description.
+ */
+final class TrigramIndex {
+    private static final class Posting {
+        static final Comparator<Posting> BY_GRAM = Comparator.comparingLong(posting -> posting.gram);
+
+        final long gram;
+        final PersistentTree<TaskEntry> entries;
+
+        Posting(long gram, PersistentTree<TaskEntry> entries) {
+            this.gram = gram;
+            this.entries = entries;
+        }
+    }
+
+    private final PersistentTree<Posting> postings;
+
+    private TrigramIndex(PersistentTree<Posting> postings) {
+        this.postings = postings;
+    }
+
+    /**
+     * Builds the index at once from entries given in sequence order.
+     */
+    static TrigramIndex of(List<TaskEntry> entries) {
+        Map<Long, List<TaskEntry>> grouped = new HashMap<>();
+        for (TaskEntry entry : entries) {
+            for (long gram : grams(entry.lowerDescription)) {
+                grouped.computeIfAbsent(gram, key -> new ArrayList<>()).add(entry);
+            }
+        }
+        List<Posting> sorted = new ArrayList<>(grouped.size());
+        grouped.forEach((gram, postingEntries) ->
+                sorted.add(new Posting(gram, PersistentTree.fromSorted(TaskEntry.BY_SEQ, postingEntries))));
+        sorted.sort(Posting.BY_GRAM);
+        return new TrigramIndex(PersistentTree.fromSorted(Posting.BY_GRAM, sorted));
+    }
+
+    TrigramIndex with(TaskEntry entry) {
+        PersistentTree<Posting> updated = postings;
+        for (long gram : grams(entry.lowerDescription)) {
+            Posting posting = updated.find(bound(gram));
+            PersistentTree<TaskEntry> entries = posting == null ? PersistentTree.empty(TaskEntry.BY_SEQ) : posting.entries;
+            updated = updated.insert(new Posting(gram, entries.insert(entry)));
+        }
+        return updated == postings ? this : new TrigramIndex(updated);
+    }
+
+    TrigramIndex without(TaskEntry entry) {
+        PersistentTree<Posting> updated = postings;
+        for (long gram : grams(entry.lowerDescription)) {
+            Posting posting = updated.find(bound(gram));
+            if (posting == null) {
+                continue;
+            }
+            PersistentTree<TaskEntry> entries = posting.entries.remove(entry);
+            updated = entries.isEmpty() ? updated.remove(posting) : updated.insert(new Posting(gram, entries));
+        }
+        return updated == postings ? this : new TrigramIndex(updated);
+    }
+
+    /**
+     * Returns the shortest posting list among the trigrams of {@code lowerKeyword}. Every task containing the
+     * keyword is in it, but candidates still have to be verified against the description.
+     *
+     * @param lowerKeyword keyword already lowercased, at least three characters long
+     */
+    PersistentTree<TaskEntry> candidates(String lowerKeyword) {
+        PersistentTree<TaskEntry> shortest = null;
+        for (long gram : grams(lowerKeyword)) {
+            Posting posting = postings.find(bound(gram));
+            if (posting == null) {
+                return PersistentTree.empty(TaskEntry.BY_SEQ);
+            }
+            if (shortest == null || posting.entries.size() < shortest.size()) {
+                shortest = posting.entries;
+            }
+        }
+        return shortest == null ? PersistentTree.empty(TaskEntry.BY_SEQ) : shortest;
+    }
+
+    private static PersistentTree.Bound<Posting> bound(long gram) {
+        return posting -> Long.compare(gram, posting.gram);
+    }
+
+    /**
+     * @return the distinct trigrams of {@code text}, each packed as three 16-bit chars into a long
+     */
+    static long[] grams(String text) {
+        if (text == null || text.length() < 3) {
+            return new long[0];
+        }
+        long[] grams = new long[text.length() - 2];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+}
@@ -0,0 +1,232 @@
+package com.isa.todo.service;
+
+import com.isa.todo.metrics.Metrics;
+import com.isa.todo.repository.TaskPage;
+import com.isa.todo.repository.TaskSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Cache of query results keyed by query name and arguments. Every entry belongs to the snapshot version it
+ * was computed from, and the whole cache is dropped as soon as a newer version is seen, so a result is never
+ * served once the repository has changed. Results computed from an older snapshot are returned but not
+ * cached.
+ * <p>
+ * The entries of a version live in a concurrent map, so a hit takes no lock: one hash probe and a timestamp
+ * on the entry. Only a miss that grows the cache past its bounds locks, to evict the least recently used
+ * entries by those timestamps.
+ * <p>
+ * The cache is bounded both by entries and by an estimate of the bytes it retains. Tasks are shared with the
+ * repository, so only the result containers count: a reference per task plus a fixed overhead per entry.
+ * Results larger than the whole budget are never cached. Cached lists and maps are unmodifiable, and so are
+ * the lists they hold; {@link com.isa.todo.repository.TaskPage} is read-only itself.
+ */
+@Component
+public class QueryCache {
+    private static final long ENTRY_OVERHEAD = 128;
+    private static final long REFERENCE_SIZE = 8;
+    private static final long MAP_ENTRY_SIZE = 48;
+
+    private static final class Entry {
+        final List<Object> key;
+        final Object result;
+        final long bytes;
+        volatile long lastUsed = System.nanoTime();
+
+        Entry(List<Object> key, Object result, long bytes) {
+            this.key = key;
+            this.result = result;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * The entries of one snapshot version; replaced as a whole when a newer version is seen.
+     */
+    private static final class Generation {
+        final long version;
+        final Map<List<Object>, Entry> entries = new ConcurrentHashMap<>();
+        final AtomicLong bytes = new AtomicLong();
+
+        Generation(long version) {
+            this.version = version;
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final AtomicReference<Generation> current = new AtomicReference<>(new Generation(Long.MIN_VALUE));
+
+    @Autowired
+    public QueryCache(Metrics metrics,
+                      @Value("${todo.query-cache.max-entries:1000}") int maxEntries,
+                      @Value("${todo.query-cache.max-bytes:16777216}") long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        metrics.gauge("query_cache_hits", hits::sum);
+        metrics.gauge("query_cache_misses", misses::sum);
+        metrics.gauge("query_cache_hit_percent", () -> {
+            long hitCount = hits.sum();
+            long total = hitCount + misses.sum();
+            return total == 0 ? 0 : hitCount * 100 / total;
+        });
+        metrics.gauge("query_cache_entries", this::size);
+        metrics.gauge("query_cache_bytes", this::getBytes);
+    }
+
+    /**
+     * A cache that never keeps anything, for running queries without caching.
+     */
+    static QueryCache disabled() {
+        return new QueryCache(new Metrics(), 0, 0);
+    }
+
+    /**
+     * Returns the cached result of {@code name} with {@code arguments} for this snapshot's version, or runs
+     * {@code query} on the snapshot and caches its result.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(TaskSnapshot snapshot, String name, Function<TaskSnapshot, T> query, Object... arguments) {
+        if (maxEntries <= 0) {
+            return query.apply(snapshot);
+        }
+        List<Object> key = key(name, arguments);
+        long snapshotVersion = snapshot.getVersion();
+        Generation generation = advanceTo(snapshotVersion);
+        Entry entry = generation.version == snapshotVersion ? generation.entries.get(key) : null;
+        if (entry != null) {
+            entry.lastUsed = System.nanoTime();
+            hits.increment();
+            return (T) entry.result;
+        }
+        misses.increment();
+        T result = unmodifiable(query.apply(snapshot));
+        long resultBytes = ENTRY_OVERHEAD + estimateBytes(result);
+        if (resultBytes <= maxBytes) {
+            generation = advanceTo(snapshotVersion);
+            if (generation.version == snapshotVersion) {
+                Entry previous = generation.entries.put(key, new Entry(key, result, resultBytes));
+                generation.bytes.addAndGet(resultBytes - (previous == null ? 0 : previous.bytes));
+                if (overBounds(generation)) {
+                    evict(generation);
+                }
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return current.get().entries.size();
+    }
+
+    public long getBytes() {
+        return current.get().bytes.get();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private static List<Object> key(String name, Object[] arguments) {
+        Object[] key = new Object[arguments.length + 1];
+        key[0] = name;
+        System.arraycopy(arguments, 0, key, 1, arguments.length);
+        return Arrays.asList(key);
+    }
+
+    /**
+     * @return the generation of {@code snapshotVersion}, started now if it is newer than the current one, or
+     * the current generation if that is newer
+     */
+    private Generation advanceTo(long snapshotVersion) {
+        while (true) {
+            Generation generation = current.get();
+            if (snapshotVersion <= generation.version) {
+                return generation;
+            }
+            Generation next = new Generation(snapshotVersion);
+            if (current.compareAndSet(generation, next)) {
+                return next;
+            }
+        }
+    }
+
+    private boolean overBounds(Generation generation) {
+        return generation.entries.size() > maxEntries || generation.bytes.get() > maxBytes;
+    }
+
+    /**
+     * Removes the least recently used entries until the generation fits again. The timestamps are copied
+     * before sorting, as hits keep updating them.
+     */
+    private void evict(Generation generation) {
+        synchronized (generation) {
+            if (!overBounds(generation)) {
+                return;
+            }
+            List<Map.Entry<Long, Entry>> byAge = new ArrayList<>(generation.entries.size());
+            for (Entry entry : generation.entries.values()) {
+                byAge.add(Map.entry(entry.lastUsed, entry));
+            }
+            byAge.sort(Map.Entry.comparingByKey());
+            for (Iterator<Map.Entry<Long, Entry>> eldest = byAge.iterator(); eldest.hasNext() && overBounds(generation); ) {
+                Entry entry = eldest.next().getValue();
+                if (generation.entries.remove(entry.key, entry)) {
+                    generation.bytes.addAndGet(-entry.bytes);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T unmodifiable(T result) {
+        if (result instanceof List) {
+            return (T) Collections.unmodifiableList((List<?>) result);
+        }
+        if (result instanceof Map) {
+            // Grouping queries map to lists, which are shared between requests as well.
+            Map<Object, Object> values = new LinkedHashMap<>();
+            ((Map<?, ?>) result).forEach((key, value) -> values.put(key, unmodifiable(value)));
+            return (T) Collections.unmodifiableMap(values);
+        }
+        return result;
+    }
+
+    private static long estimateBytes(Object result) {
+        if (result instanceof TaskPage) {
+            return estimateBytes(((TaskPage) result).getTasks());
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size() * REFERENCE_SIZE;
+        }
+        if (result instanceof Map) {
+            long size = 0;
+            for (Object value : ((Map<?, ?>) result).values()) {
+                size += MAP_ENTRY_SIZE + estimateBytes(value);
+            }
+            return size;
+        }
+        return REFERENCE_SIZE;
+    }
+}
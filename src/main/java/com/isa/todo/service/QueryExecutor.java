@@ -0,0 +1,53 @@
+package com.isa.todo.service;
+
+import com.isa.todo.repository.TaskSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Runs queries on snapshots of at least {@code todo.query.parallel-threshold} tasks in parallel mode, on a
+ * dedicated fork-join pool of {@code todo.query.parallelism} threads (all cores when 0). Smaller snapshots
+ * are queried on the calling thread, where splitting would cost more than it saves.
+ */
+@Component
+public class QueryExecutor {
+    private final int threshold;
+    private final ForkJoinPool pool;
+
+    @Autowired
+    public QueryExecutor(@Value("${todo.query.parallel:true}") boolean parallel,
+                         @Value("${todo.query.parallel-threshold:50000}") int threshold,
+                         @Value("${todo.query.parallelism:0}") int parallelism) {
+        this.threshold = threshold;
+        this.pool = parallel
+                ? new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors())
+                : null;
+    }
+
+    /**
+     * An executor that always queries on the calling thread.
+     */
+    static QueryExecutor sequential() {
+        return new QueryExecutor(false, Integer.MAX_VALUE, 1);
+    }
+
+    <T> T run(TaskSnapshot snapshot, Function<TaskSnapshot, T> query) {
+        if (pool == null || snapshot.size() < threshold) {
+            return query.apply(snapshot);
+        }
+        // Parallel streams started from within the pool split their work across it.
+        return pool.submit(() -> query.apply(snapshot.parallel())).join();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+}
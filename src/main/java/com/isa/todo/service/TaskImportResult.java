@@ -0,0 +1,61 @@
+package com.isa.todo.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import: how many records were added and why the others were rejected. Only the first
+ * {@value #MAX_REPORTED_ERRORS} errors are kept, so the report stays small whatever the payload size.
+ */
+public class TaskImportResult {
+    static final int MAX_REPORTED_ERRORS = 1_000;
+
+    private final List<RecordError> errors = new ArrayList<>();
+    private int imported;
+    private int rejected;
+
+    void imported(int count) {
+        imported += count;
+    }
+
+    void rejected(int record, String message) {
+        rejected++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new RecordError(record, message));
+        }
+    }
+
+    public int getImported() {
+        return imported;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public List<RecordError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    public static class RecordError {
+        private final int record;
+        private final String message;
+
+        RecordError(int record, String message) {
+            this.record = record;
+            this.message = message;
+        }
+
+        /**
+         * @return the 1-based position of the record in the payload
+         */
+        public int getRecord() {
+            return record;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
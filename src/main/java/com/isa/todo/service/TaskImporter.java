@@ -0,0 +1,121 @@
+package com.isa.todo.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.isa.todo.metrics.Metrics;
+import com.isa.todo.model.Task;
+import com.isa.todo.repository.TaskRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Imports tasks from a stream holding either a JSON array or newline-delimited JSON objects. Records are
+ * parsed one at a time and added in batches of {@value #BATCH_SIZE}, each written with a single flush, so
+ * memory use does not depend on the payload size. Invalid records are reported and skipped.
+ */
+@Service
+public class TaskImporter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskImporter.class);
+    static final int BATCH_SIZE = 1_000;
+
+    private final TaskRepository taskRepository;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final Metrics metrics;
+
+    @Autowired
+    public TaskImporter(TaskRepository taskRepository, ObjectMapper objectMapper, Validator validator, Metrics metrics) {
+        this.taskRepository = taskRepository;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Tasks without an id get a new one; a task whose id already exists replaces it. Malformed JSON ends
+     * the import, but the batches added before it are kept.
+     */
+    public TaskImportResult importTasks(InputStream input) {
+        return metrics.time("service.importTasks", () -> {
+            TaskImportResult result = new TaskImportResult();
+            List<Task> batch = new ArrayList<>(BATCH_SIZE);
+            int record = 0;
+            try (JsonParser parser = objectMapper.getFactory().createParser(input)) {
+                JsonToken token = parser.nextToken();
+                boolean array = token == JsonToken.START_ARRAY;
+                if (array) {
+                    token = parser.nextToken();
+                }
+                while (token != null && token != JsonToken.END_ARRAY) {
+                    record++;
+                    JsonNode node = parser.readValueAsTree();
+                    Task task = toTask(node, record, result);
+                    if (task != null) {
+                        batch.add(task);
+                        if (batch.size() == BATCH_SIZE) {
+                            flush(batch, result);
+                        }
+                    }
+                    token = parser.nextToken();
+                }
+            } catch (JsonProcessingException e) {
+                result.rejected(record, "Malformed JSON, import stopped: " + e.getOriginalMessage());
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read imported tasks", e);
+            }
+            flush(batch, result);
+            LOGGER.info("Imported {} tasks, rejected {}", result.getImported(), result.getRejected());
+            return result;
+        });
+    }
+
+    private Task toTask(JsonNode node, int record, TaskImportResult result) {
+        if (!node.isObject()) {
+            result.rejected(record, "Expected a JSON object");
+            return null;
+        }
+        Task task;
+        try {
+            task = objectMapper.treeToValue(node, Task.class);
+        } catch (JsonProcessingException e) {
+            result.rejected(record, e.getOriginalMessage());
+            return null;
+        }
+        if (!TaskService.isValidId(task.getId())) {
+            result.rejected(record, "id must be a UUID");
+            return null;
+        }
+        Set<ConstraintViolation<Task>> violations = validator.validate(task);
+        if (!violations.isEmpty()) {
+            result.rejected(record, violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+            return null;
+        }
+        return task;
+    }
+
+    private void flush(List<Task> batch, TaskImportResult result) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        taskRepository.addTasks(batch);
+        result.imported(batch.size());
+        batch.clear();
+    }
+}
@@ -1,8 +1,16 @@
 package com.isa.todo.service;
 
+import com.isa.todo.metrics.Metrics;
+import com.isa.todo.metrics.TaskQueryEvent;
 import com.isa.todo.model.Category;
 import com.isa.todo.model.Task;
+import com.isa.todo.repository.TaskChange;
+import com.isa.todo.repository.TaskChangeFeed;
+import com.isa.todo.repository.TaskOrder;
+import com.isa.todo.repository.TaskPage;
+import com.isa.todo.repository.TaskQuery;
 import com.isa.todo.repository.TaskRepository;
+import com.isa.todo.repository.TaskSnapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,24 +18,86 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 @Service
 public class TaskService {
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskService.class);
     private final TaskRepository taskRepository;
+    private final Metrics metrics;
+    private final QueryCache queryCache;
+    private final QueryExecutor queryExecutor;
+    private final String instanceTag = Long.toString(System.currentTimeMillis(), 36);
 
     @Autowired
-    public TaskService(TaskRepository taskRepository) {
+    public TaskService(TaskRepository taskRepository, Metrics metrics, QueryCache queryCache, QueryExecutor queryExecutor) {
         this.taskRepository = taskRepository;
+        this.metrics = metrics;
+        this.queryCache = queryCache;
+        this.queryExecutor = queryExecutor;
+    }
+
+    public TaskService(TaskRepository taskRepository, Metrics metrics) {
+        this(taskRepository, metrics, QueryCache.disabled(), QueryExecutor.sequential());
     }
 
     public void addTask(Task task) {
         taskRepository.addTask(task);
     }
 
+    public CompletableFuture<Void> addTaskAsync(Task task) {
+        return taskRepository.addTaskAsync(task);
+    }
+
+    public long getVersion() {
+        return taskRepository.getVersion();
+    }
+
+    public long getLastModified() {
+        return taskRepository.getLastModified();
+    }
+
+    /**
+     * @return a token per application start, to tell versions apart after a restart, when they start over
+     */
+    public String getInstanceTag() {
+        return instanceTag;
+    }
+
+    /**
+     * Passes {@code listener} every change after {@code fromVersion}, as described in
+     * {@link TaskChangeFeed#subscribe}.
+     *
+     * @return the version the listener actually starts after
+     */
+    public long subscribeToChanges(long fromVersion, Consumer<List<TaskChange>> listener) {
+        return taskRepository.changeFeed().subscribe(fromVersion, listener);
+    }
+
+    public void unsubscribeFromChanges(Consumer<List<TaskChange>> listener) {
+        taskRepository.changeFeed().unsubscribe(listener);
+    }
+
+    /**
+     * Ids end up in the binary snapshot format, which stores them as UUIDs.
+     */
+    public static boolean isValidId(String id) {
+        try {
+            return id != null && UUID.fromString(id).toString().equals(id);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
     public List<Task> getAllTasks() {
-        return taskRepository.getAllTasks();
+        return metrics.time("service.getAllTasks", () -> taskRepository.getAllTasks());
+    }
+
+    public TaskPage getAllTasks(String after, int size) {
+        return query("getAllTasksPage", snapshot -> snapshot.page(TaskOrder.INSERTION, after, size), after, size);
     }
 
     public Task getTaskById(String id) {
@@ -43,28 +113,29 @@ public class TaskService {
 
 
     public List<Task> findTasksWithPriority1() {
-        return taskRepository.getAllTasks().stream()
-                .filter(task -> Objects.equals(task.getPriority(), 1))
-                .collect(Collectors.toList());
+        return query("findTasksWithPriority1", snapshot -> snapshot.findByPriority(1));
     }
 
     public List<Task> findTasksForNextDay() {
         LocalDate nextDay = LocalDate.now().plusDays(1);
-        return taskRepository.getAllTasks().stream()
-                .filter(task -> task.getDueDate().equals(nextDay))
-                .collect(Collectors.toList());
+        return query("findTasksForNextDay", snapshot -> snapshot.findByDueDateBetween(nextDay, nextDay), nextDay);
     }
 
     public List<Task> sortTasksByPriorityDescending() {
-        return taskRepository.getAllTasks().stream()
-                .sorted(Comparator.comparingInt(Task::getPriority))
-                .collect(Collectors.toList());
+        return query("sortTasksByPriorityDescending", snapshot -> snapshot.first(TaskOrder.PRIORITY, snapshot.size()));
+    }
+
+    public TaskPage sortTasksByPriorityDescending(String after, int size) {
+        return query("sortTasksByPriorityDescendingPage",
+                snapshot -> snapshot.page(TaskOrder.PRIORITY, after, size), after, size);
     }
 
     public List<Task> sortTasksByDate() {
-        return taskRepository.getAllTasks().stream()
-                .sorted(Comparator.comparing(Task::getDueDate))
-                .collect(Collectors.toList());
+        return query("sortTasksByDate", snapshot -> snapshot.first(TaskOrder.DUE_DATE, snapshot.size()));
+    }
+
+    public TaskPage sortTasksByDate(String after, int size) {
+        return query("sortTasksByDatePage", snapshot -> snapshot.page(TaskOrder.DUE_DATE, after, size), after, size);
     }
 
     public void removeTaskById(String id) {
@@ -73,38 +144,126 @@ public class TaskService {
         }
     }
 
+    public CompletableFuture<Void> removeTaskByIdAsync(String id) {
+        return taskRepository.removeTaskByIdAsync(id);
+    }
+
 
     public List<Task> findTasksByCategory(Category category) {
-        return taskRepository.getAllTasks().stream()
-                .filter(task -> task.getCategory() == category)
-                .collect(Collectors.toList());
+        return query("findTasksByCategory", snapshot -> snapshot.findByCategory(category), category);
+    }
+
+    public TaskPage findTasksByCategory(Category category, String after, int size) {
+        return query("findTasksByCategoryPage",
+                snapshot -> snapshot.pageByCategory(category, after, size), category, after, size);
     }
 
     public List<Task> findTasksByDescriptionContains(String keyword) {
-        return taskRepository.getAllTasks().stream()
-                .filter(task -> task.getDescription().toLowerCase().contains(keyword.toLowerCase()))
-                .collect(Collectors.toList());
+        return query("findTasksByDescriptionContains", snapshot -> snapshot.findByDescriptionContaining(keyword), keyword);
+    }
+
+    public TaskPage findTasksByDescriptionContains(String keyword, String after, int size) {
+        return query("findTasksByDescriptionContainsPage",
+                snapshot -> snapshot.pageByDescriptionContaining(keyword, after, size), keyword, after, size);
+    }
+
+    public List<Task> searchTasks(TaskQuery query) {
+        return query("searchTasks", snapshot -> snapshot.search(query), query);
     }
 
     public Optional<Task> findMostUrgentTask() {
-        return taskRepository.getAllTasks().stream()
-                .min(Comparator.comparing(Task::getDueDate).thenComparingInt(Task::getPriority));
+        return query("findMostUrgentTask", snapshot -> snapshot.first(TaskOrder.URGENCY, 1).stream().findFirst());
+    }
+
+    public List<Task> findMostUrgentTasks(int limit) {
+        return query("findMostUrgentTasks", snapshot -> snapshot.first(TaskOrder.URGENCY, limit), limit);
+    }
+
+    /*
+     * Lazy variants for writing large results out as they are produced. The stream reads one snapshot, so
+     * it is consistent however long the caller takes to consume it.
+     */
+
+    public Stream<Task> streamTasks(TaskOrder order) {
+        return taskRepository.snapshot().stream(order);
+    }
+
+    public Stream<Task> streamTasksByCategory(Category category) {
+        return taskRepository.snapshot().streamByCategory(category);
+    }
+
+    public Stream<Task> streamTasksByPriority(int priority) {
+        return taskRepository.snapshot().streamByPriority(priority);
+    }
+
+    public Stream<Task> streamTasksByDueDateBetween(LocalDate from, LocalDate to) {
+        return taskRepository.snapshot().streamByDueDateBetween(from, to);
+    }
+
+    public Stream<Task> streamTasksByDescriptionContains(String keyword) {
+        return taskRepository.snapshot().streamByDescriptionContaining(keyword);
+    }
+
+    /**
+     * @return every category mapped to its tasks, all read from the same snapshot; categories without
+     * tasks map to an empty stream
+     */
+    public Map<Category, Stream<Task>> streamTasksDividedByCategory() {
+        TaskSnapshot snapshot = taskRepository.snapshot();
+        Map<Category, Stream<Task>> result = new EnumMap<>(Category.class);
+        for (Category category : Category.values()) {
+            result.put(category, snapshot.streamByCategory(category));
+        }
+        return result;
     }
 
     public Map<Category, List<Task>> divideTasksByCategory() {
-        return taskRepository.getAllTasks().stream()
-                .collect(Collectors.groupingBy(Task::getCategory));
+        return query("divideTasksByCategory", snapshot -> snapshot.groupByCategory());
     }
 
     public Map<Integer, List<Task>> divideTasksByPriority() {
-        return taskRepository.getAllTasks().stream()
-                .collect(Collectors.groupingBy(Task::getPriority));
+        return query("divideTasksByPriority", snapshot -> snapshot.groupByPriority());
     }
 
     public Map<Category, Optional<Task>> findHighestPriorityTaskForEachCategory() {
-        return taskRepository.getAllTasks().stream()
-                .collect(Collectors.groupingBy(Task::getCategory,
-                        Collectors.minBy(Comparator.comparingInt(Task::getPriority))));
+        return query("findHighestPriorityTaskForEachCategory", snapshot -> snapshot.findHighestPriorityPerCategory());
+    }
+
+    /**
+     * Runs a query on the current snapshot through the query cache and the query executor, timed as
+     * {@code service.<name>} and recorded as a {@link TaskQueryEvent}. {@code arguments} must be everything
+     * besides the snapshot that the result depends on.
+     */
+    private <T> T query(String name, Function<TaskSnapshot, T> query, Object... arguments) {
+        TaskQueryEvent event = new TaskQueryEvent();
+        event.begin();
+        TaskSnapshot current = taskRepository.snapshot();
+        T result = metrics.time("service." + name, () -> queryCache.get(current, name, snapshot -> {
+            event.cached = false;
+            return queryExecutor.run(snapshot, query);
+        }, arguments));
+        event.end();
+        if (event.shouldCommit()) {
+            // Only counted when recording, as a SQL snapshot counts its tasks with a query.
+            event.query = name;
+            event.snapshotSize = current.size();
+            event.results = resultSize(result);
+            event.commit();
+        }
+        return result;
+    }
+
+    private static int resultSize(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        } else if (result instanceof Map) {
+            return ((Map<?, ?>) result).size();
+        } else if (result instanceof TaskPage) {
+            return ((TaskPage) result).getTasks().size();
+        } else if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent() ? 1 : 0;
+        }
+        return result == null ? 0 : 1;
     }
 
 }
@@ -0,0 +1,42 @@
+package com.isa.todo.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void snapshot_ShouldReportPercentilesWithinBucketPrecision() {
+        // Given
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 1_000_000; nanos++) {
+            histogram.record(nanos * 1_000);
+        }
+
+        // When
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        long p50 = snapshot.percentileNanos(0.5);
+        long p99 = snapshot.percentileNanos(0.99);
+
+        // Then
+        assertAll("Percentiles",
+                () -> assertEquals(1_000_000, snapshot.getCount(), "Incorrect count"),
+                () -> assertEquals(1_000_000_000L, snapshot.getMaxNanos(), "Incorrect max"),
+                () -> assertTrue(p50 >= 500_000_000L && p50 <= 500_000_000L * 1.125, "p50 is " + p50),
+                () -> assertTrue(p99 >= 990_000_000L && p99 <= 1_000_000_000L, "p99 is " + p99)
+        );
+    }
+
+    @Test
+    void snapshot_WhenNothingRecorded_ShouldReportZero() {
+        // When
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+        // Then
+        assertAll("Empty histogram",
+                () -> assertEquals(0, snapshot.getCount(), "Incorrect count"),
+                () -> assertEquals(0, snapshot.percentileNanos(0.99), "Incorrect p99")
+        );
+    }
+}
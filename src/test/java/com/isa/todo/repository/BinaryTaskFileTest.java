@@ -0,0 +1,80 @@
+package com.isa.todo.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.isa.todo.model.Category;
+import com.isa.todo.model.Task;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryTaskFileTest {
+
+    @TempDir
+    Path tempDir;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    Task task1 = new Task("Zażółć gęślą jaźń", Category.WORK, 1, LocalDate.now().plusDays(1));
+    Task task2 = new Task(null, null, 2, null);
+    Task task3 = new Task("Zażółć gęślą jaźń", Category.OTHER, 3, LocalDate.now().plusDays(3));
+
+    @Test
+    void map_ShouldReadBackEveryField() throws IOException {
+        // Given
+        File file = tempDir.resolve("tasks.bin").toFile();
+        BinaryTaskFile.write(file, List.of(task1, task2, task3), 3);
+
+        // When
+        List<Task> tasks = BinaryTaskFile.map(file).toList();
+
+        // Then
+        assertAll("Tasks",
+                () -> assertEquals(3, tasks.size(), "Incorrect number of tasks"),
+                () -> assertEquals(task1.getId(), tasks.get(0).getId(), "Id does not match"),
+                () -> assertEquals(task1.getDescription(), tasks.get(0).getDescription(), "Description does not match"),
+                () -> assertEquals(task1.getCategory(), tasks.get(0).getCategory(), "Category does not match"),
+                () -> assertEquals(task1.getPriority(), tasks.get(0).getPriority(), "Priority does not match"),
+                () -> assertEquals(task1.getDueDate(), tasks.get(0).getDueDate(), "Due date does not match"),
+                () -> assertNull(tasks.get(1).getDescription(), "Missing description was not kept"),
+                () -> assertNull(tasks.get(1).getCategory(), "Missing category was not kept"),
+                () -> assertNull(tasks.get(1).getDueDate(), "Missing due date was not kept"),
+                () -> assertEquals(task3.getDescription(), tasks.get(2).getDescription(), "Shared description does not match")
+        );
+    }
+
+    @Test
+    void map_WhenFileIsNotBinarySnapshot_ShouldThrow() throws IOException {
+        // Given
+        File file = tempDir.resolve("tasks.json").toFile();
+        Files.writeString(file.toPath(), "[]");
+
+        // When & Then
+        assertThrows(IOException.class, () -> BinaryTaskFile.map(file), "JSON file was mapped");
+    }
+
+    @Test
+    void convert_ShouldRoundTripThroughBinaryFormat() throws IOException {
+        // Given
+        File json = tempDir.resolve("tasks.json").toFile();
+        File binary = tempDir.resolve("tasks.bin").toFile();
+        File exported = tempDir.resolve("exported.json").toFile();
+        objectMapper.writeValue(json, List.of(task1, task2, task3));
+
+        // When
+        TaskSnapshotConverter.convert(json, binary, objectMapper);
+        TaskSnapshotConverter.convert(binary, exported, objectMapper);
+
+        // Then
+        assertEquals(objectMapper.readTree(json), objectMapper.readTree(exported), "Exported JSON does not match");
+    }
+}
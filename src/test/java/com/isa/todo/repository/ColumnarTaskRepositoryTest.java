@@ -0,0 +1,184 @@
+package com.isa.todo.repository;
+
+import com.isa.todo.model.Category;
+import com.isa.todo.model.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarTaskRepositoryTest {
+
+    private static final String[] WORDS = {"Report", "Grocery shopping", "Booking tickets", "Preparing a report"};
+    Task task1 = new Task("Task 1", Category.WORK, 1, LocalDate.now().plusDays(1));
+    Task task2 = new Task("Task 2", null, 2, null);
+    Task task3 = new Task(null, Category.OTHER, 3, LocalDate.now().plusDays(3));
+    private ColumnarTaskRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new ColumnarTaskRepository(List.of(task1, task2));
+    }
+
+    @Test
+    void getTaskById_ShouldReturnCopyOfEveryField() {
+        // When
+        Task found = repository.getTaskById(task1.getId());
+        Task withoutDate = repository.getTaskById(task2.getId());
+
+        // Then
+        assertAll("Task",
+                () -> assertEquals(task1.getId(), found.getId(), "Id does not match"),
+                () -> assertEquals(task1.getDescription(), found.getDescription(), "Description does not match"),
+                () -> assertEquals(task1.getCategory(), found.getCategory(), "Category does not match"),
+                () -> assertEquals(task1.getPriority(), found.getPriority(), "Priority does not match"),
+                () -> assertEquals(task1.getDueDate(), found.getDueDate(), "Due date does not match"),
+                () -> assertNull(withoutDate.getDueDate(), "Missing due date was not kept"),
+                () -> assertNull(withoutDate.getCategory(), "Missing category was not kept"),
+                () -> assertNull(repository.getTaskById("nonexistent_id"), "Unknown id was found")
+        );
+    }
+
+    @Test
+    void snapshot_ShouldNotSeeLaterWrites() {
+        // Given
+        TaskSnapshot before = repository.snapshot();
+
+        // When
+        repository.addTask(task3);
+        repository.removeTaskById(task1.getId());
+        TaskSnapshot after = repository.snapshot();
+
+        // Then
+        assertAll("Snapshots",
+                () -> assertEquals(ids(List.of(task1, task2)), ids(before.toList()), "Old snapshot changed"),
+                () -> assertEquals(ids(List.of(task2, task3)), ids(after.toList()), "New snapshot is incorrect"),
+                () -> assertNull(after.toList().get(1).getDescription(), "Missing description was not kept"),
+                () -> assertNull(repository.getTaskById(task1.getId()), "Removed task was found"),
+                () -> assertEquals(before.getVersion() + 2, after.getVersion(), "Version was not bumped per write")
+        );
+    }
+
+    @Test
+    void queries_ShouldMatchInMemoryRepositoryAcrossCompactions() {
+        // Given
+        Random random = new Random(5);
+        ColumnarTaskRepository columnar = new ColumnarTaskRepository();
+        InMemoryTaskRepository inMemory = new InMemoryTaskRepository();
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            Task task = new Task("Task " + WORDS[random.nextInt(WORDS.length)], Category.values()[random.nextInt(3)],
+                    1 + random.nextInt(5), LocalDate.now().plusDays(random.nextInt(60)));
+            tasks.add(task);
+            columnar.addTask(task);
+            inMemory.addTask(task);
+        }
+        TaskSnapshot beforeRemovals = columnar.snapshot();
+        for (int i = 0; i < 4_000; i++) {
+            columnar.removeTaskById(tasks.get(i).getId());
+            inMemory.removeTaskById(tasks.get(i).getId());
+        }
+
+        // When
+        TaskSnapshot snapshot = columnar.snapshot();
+        TaskSnapshot expected = inMemory.snapshot();
+        LocalDate from = LocalDate.now().plusDays(10);
+        LocalDate to = LocalDate.now().plusDays(20);
+
+        // Then
+        assertAll("Queries",
+                () -> assertEquals(ids(expected.toList()), ids(snapshot.toList()), "Task list is incorrect"),
+                () -> assertEquals(ids(expected.findByCategory(Category.HOME)), ids(snapshot.findByCategory(Category.HOME)),
+                        "Category query is incorrect"),
+                () -> assertEquals(ids(expected.findByPriority(2)), ids(snapshot.findByPriority(2)), "Priority query is incorrect"),
+                () -> assertEquals(ids(expected.findByDueDateBetween(from, to)), ids(snapshot.findByDueDateBetween(from, to)),
+                        "Due date query is incorrect"),
+                () -> assertEquals(ids(expected.findByDescriptionContaining("report")),
+                        ids(snapshot.findByDescriptionContaining("report")), "Description query is incorrect"),
+                () -> assertEquals(5_000, beforeRemovals.size(), "Snapshot taken before compaction changed"),
+                () -> assertEquals(tasks.get(4_999).getId(), columnar.getTaskById(tasks.get(4_999).getId()).getId(),
+                        "Id lookup is incorrect after compaction")
+        );
+    }
+
+    @Test
+    void getBytesPerTask_ShouldStayFarBelowObjectPerTask() {
+        // Given
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            tasks.add(new Task(WORDS[i % WORDS.length], Category.values()[i % 3], 1 + i % 5, LocalDate.now().plusDays(i % 60)));
+        }
+
+        // When
+        ColumnarTaskRepository columnar = new ColumnarTaskRepository(tasks);
+
+        // Then
+        assertTrue(columnar.getBytesPerTask() < 64, "Columns use " + columnar.getBytesPerTask() + " bytes per task");
+    }
+
+    @Test
+    void addTask_WhenReaddingSameTasks_ShouldCompactReplacedRows() {
+        // When
+        for (int i = 0; i < 10_000; i++) {
+            repository.addTask(i % 2 == 0 ? task1 : task2);
+        }
+
+        // Then
+        assertAll("Re-added tasks",
+                () -> assertEquals(ids(List.of(task1, task2)), ids(repository.getAllTasks()), "Task list is incorrect"),
+                () -> assertTrue(repository.getBytesPerTask() < 100_000,
+                        "Replaced rows were kept, " + repository.getBytesPerTask() + " bytes per task")
+        );
+    }
+
+    @Test
+    void getTaskById_WhileTaskIsReadded_ShouldAlwaysFindIt() throws InterruptedException {
+        // Given
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicInteger misses = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while (writing.get()) {
+                if (repository.getTaskById(task1.getId()) == null) {
+                    misses.incrementAndGet();
+                }
+            }
+        });
+        reader.start();
+
+        // When
+        for (int i = 0; i < 20_000; i++) {
+            repository.addTask(task1);
+            repository.addTask(new Task(WORDS[i % WORDS.length], Category.WORK, 1, null));
+        }
+        writing.set(false);
+        reader.join();
+
+        // Then
+        assertAll("Lookups",
+                () -> assertEquals(0, misses.get(), "Re-added task was not found"),
+                () -> assertEquals(task1.getDescription(), repository.getTaskById(task1.getId()).getDescription(),
+                        "Re-added task is incorrect")
+        );
+    }
+
+    @Test
+    void addTask_WhenIdIsNotUuid_ShouldThrow() {
+        // Given
+        Task task = new Task("not-a-uuid", "Task", Category.WORK, 1, LocalDate.now());
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> repository.addTask(task), "Invalid id was accepted");
+    }
+
+    private static List<String> ids(List<Task> tasks) {
+        return tasks.stream().map(Task::getId).collect(Collectors.toList());
+    }
+}
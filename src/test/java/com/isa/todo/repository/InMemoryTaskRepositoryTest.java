@@ -0,0 +1,316 @@
+package com.isa.todo.repository;
+
+import com.isa.todo.model.Category;
+import com.isa.todo.model.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryTaskRepositoryTest {
+
+    private static final String[] WORDS = {"Report", "Grocery shopping", "Booking tickets", "Preparing a report"};
+    Task task1 = new Task("Task 1", Category.WORK, 1, LocalDate.now().plusDays(1));
+    Task task2 = new Task("Task 2", Category.HOME, 2, LocalDate.now().plusDays(2));
+    Task task3 = new Task("Task 3", Category.OTHER, 3, LocalDate.now().plusDays(3));
+    private InMemoryTaskRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new InMemoryTaskRepository(List.of(task1, task2));
+    }
+
+    @Test
+    void snapshot_ShouldNotSeeLaterWrites() {
+        // Given
+        TaskSnapshot before = repository.snapshot();
+
+        // When
+        repository.addTask(task3);
+        repository.removeTaskById(task1.getId());
+        TaskSnapshot after = repository.snapshot();
+
+        // Then
+        assertAll("Snapshots",
+                () -> assertEquals(List.of(task1, task2), before.toList(), "Old snapshot changed"),
+                () -> assertEquals(List.of(task2, task3), after.toList(), "New snapshot is incorrect"),
+                () -> assertEquals(before.getVersion() + 2, after.getVersion(), "Version was not bumped per write")
+        );
+    }
+
+    @Test
+    void removeTaskById_WhenTaskDoesNotExist_ShouldNotChangeSnapshot() {
+        // Given
+        TaskSnapshot before = repository.snapshot();
+
+        // When
+        repository.removeTaskById("nonexistent_id");
+
+        // Then
+        assertSame(before, repository.snapshot(), "Snapshot was replaced");
+    }
+
+    @Test
+    void indexes_ShouldFollowAddsAndRemoves() {
+        // Given
+        repository.addTask(task3);
+
+        // When
+        repository.removeTaskById(task2.getId());
+        TaskSnapshot snapshot = repository.snapshot();
+
+        // Then
+        assertAll("Indexes",
+                () -> assertEquals(List.of(task1), snapshot.findByCategory(Category.WORK), "Category index is incorrect"),
+                () -> assertTrue(snapshot.findByCategory(Category.HOME).isEmpty(), "Removed task is still indexed"),
+                () -> assertEquals(List.of(task3), snapshot.findByPriority(3), "Priority index is incorrect"),
+                () -> assertEquals(List.of(task1, task3), snapshot.findByDueDateBetween(LocalDate.now(), LocalDate.now().plusDays(3)),
+                        "Due date index is incorrect"),
+                () -> assertFalse(snapshot.groupByCategory().containsKey(Category.HOME), "Empty category is present"),
+                () -> assertEquals(List.of(task3), snapshot.findByDescriptionContaining("SK 3"), "Trigram index is incorrect"),
+                () -> assertTrue(snapshot.findByDescriptionContaining("Task 2").isEmpty(), "Removed task is still searchable")
+        );
+    }
+
+    @Test
+    void indexedStreams_ShouldFollowIndexWhenReturnedTasksAreChanged() {
+        // Given
+        Task task4 = new Task("Task 4", Category.WORK, 1, LocalDate.now().plusDays(1));
+        Task undated = new Task("Undated", Category.WORK, 1, null);
+        repository.addTasks(List.of(task4, undated));
+        TaskSnapshot snapshot = repository.snapshot();
+
+        // When
+        task1.setPriority(5);
+        task1.setDueDate(LocalDate.now().plusDays(30));
+        List<Task> byPriority = snapshot.streamByPriority(1).collect(Collectors.toList());
+        List<Task> byDueDate = snapshot.streamByDueDateBetween(LocalDate.now(), LocalDate.now().plusDays(100))
+                .collect(Collectors.toList());
+
+        // Then
+        assertAll("Indexed streams",
+                () -> assertEquals(List.of(task1, task4, undated), byPriority, "Priority walk stopped on a changed task"),
+                () -> assertEquals(List.of(task1, task4, task2), byDueDate, "Due date walk did not stop at undated tasks")
+        );
+    }
+
+    @Test
+    void indexes_ShouldMatchFullScan() {
+        // Given
+        Random random = new Random(7);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            tasks.add(new Task("Task " + WORDS[random.nextInt(WORDS.length)] + " " + i, Category.values()[random.nextInt(3)], 1 + random.nextInt(5),
+                    LocalDate.now().plusDays(random.nextInt(60))));
+        }
+        InMemoryTaskRepository indexed = new InMemoryTaskRepository();
+        tasks.forEach(indexed::addTask);
+        for (int i = 0; i < tasks.size(); i += 3) {
+            indexed.removeTaskById(tasks.get(i).getId());
+        }
+
+        // When
+        TaskSnapshot snapshot = indexed.snapshot();
+        TaskSnapshot scanned = TaskSnapshot.of(snapshot.getVersion(), snapshot.toList());
+        LocalDate from = LocalDate.now().plusDays(10);
+        LocalDate to = LocalDate.now().plusDays(20);
+
+        // Then
+        assertAll("Indexes",
+                () -> assertEquals(scanned.findByCategory(Category.HOME), snapshot.findByCategory(Category.HOME), "Category index is incorrect"),
+                () -> assertEquals(scanned.findByPriority(2), snapshot.findByPriority(2), "Priority index is incorrect"),
+                () -> assertEquals(scanned.findByDueDateBetween(from, to), snapshot.findByDueDateBetween(from, to), "Due date index is incorrect"),
+                () -> assertEquals(scanned.groupByCategory(), snapshot.groupByCategory(), "Category grouping is incorrect"),
+                () -> assertEquals(scanned.groupByPriority(), snapshot.groupByPriority(), "Priority grouping is incorrect"),
+                () -> assertEquals(scanned.findHighestPriorityPerCategory(), snapshot.findHighestPriorityPerCategory(),
+                        "Highest priority per category is incorrect"),
+                () -> assertEquals(scanned.first(TaskOrder.URGENCY, 10), snapshot.first(TaskOrder.URGENCY, 10), "Most urgent tasks are incorrect"),
+                () -> assertEquals(scanned.findByDescriptionContaining("REPORT 1"), snapshot.findByDescriptionContaining("REPORT 1"),
+                        "Trigram search is incorrect"),
+                () -> assertEquals(scanned.findByDescriptionContaining("ry"), snapshot.findByDescriptionContaining("ry"),
+                        "Short keyword search is incorrect"),
+                () -> assertTrue(snapshot.findByDescriptionContaining("xyz").isEmpty(), "Unknown trigram matched"),
+                () -> assertEquals(scanned.stream(TaskOrder.DUE_DATE).collect(Collectors.toList()),
+                        snapshot.stream(TaskOrder.DUE_DATE).collect(Collectors.toList()), "Ordered stream is incorrect"),
+                () -> assertEquals(scanned.findByDescriptionContaining("ry"), snapshot.parallel().findByDescriptionContaining("ry"),
+                        "Parallel search is incorrect"),
+                () -> assertEquals(scanned.findByDueDateBetween(from, to), snapshot.parallel().findByDueDateBetween(from, to),
+                        "Parallel due date query is incorrect"),
+                () -> assertEquals(scanned.toList(), snapshot.parallel().stream().collect(Collectors.toList()),
+                        "Parallel stream changed the order")
+        );
+    }
+
+    @Test
+    void search_ShouldMatchFullScanWhicheverPathIsPlanned() {
+        // Given
+        Random random = new Random(13);
+        InMemoryTaskRepository indexed = new InMemoryTaskRepository();
+        for (int i = 0; i < 3_000; i++) {
+            indexed.addTask(new Task(WORDS[random.nextInt(WORDS.length)] + " " + i, random.nextInt(10) == 0 ? null : Category.values()[random.nextInt(3)],
+                    1 + random.nextInt(5), random.nextInt(10) == 0 ? null : LocalDate.now().plusDays(random.nextInt(60))));
+        }
+        InMemoryTaskSnapshot snapshot = (InMemoryTaskSnapshot) indexed.snapshot();
+        TaskSnapshot scanned = TaskSnapshot.of(snapshot.getVersion(), snapshot.toList());
+        List<TaskQuery> queries = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            LocalDate from = random.nextBoolean() ? null : LocalDate.now().plusDays(random.nextInt(60));
+            queries.add(new TaskQuery(
+                    random.nextBoolean() ? null : Category.values()[random.nextInt(3)],
+                    random.nextBoolean() ? null : 1 + random.nextInt(5),
+                    random.nextBoolean() ? null : 1 + random.nextInt(5),
+                    from,
+                    random.nextBoolean() ? null : LocalDate.now().plusDays(random.nextInt(60)),
+                    random.nextBoolean() ? null : new String[]{"re", "REPORT 1", "book", "xyz"}[random.nextInt(4)],
+                    TaskOrder.values()[random.nextInt(TaskOrder.values().length)],
+                    random.nextBoolean() ? 10 : 5_000));
+        }
+
+        // When
+        TaskQuery byDay = new TaskQuery(Category.WORK, null, null, LocalDate.now().plusDays(3), LocalDate.now().plusDays(3),
+                null, TaskOrder.INSERTION, 5_000);
+        TaskQuery byKeyword = new TaskQuery(Category.HOME, 1, 5, null, null, "report 12", TaskOrder.PRIORITY, 5_000);
+        TaskQuery firstByPriority = new TaskQuery(null, 1, 5, null, null, null, TaskOrder.PRIORITY, 10);
+
+        // Then
+        assertAll("Search",
+                () -> assertEquals(queries.stream().map(scanned::search).collect(Collectors.toList()),
+                        queries.stream().map(snapshot::search).collect(Collectors.toList()), "Planned search differs from full scan"),
+                () -> assertEquals(InMemoryTaskSnapshot.AccessPath.DUE_DATE_RANGE, snapshot.accessPath(byDay),
+                        "Single day was not looked up by due date"),
+                () -> assertEquals(InMemoryTaskSnapshot.AccessPath.KEYWORD, snapshot.accessPath(byKeyword),
+                        "Rare keyword was not looked up by trigram"),
+                () -> assertEquals(InMemoryTaskSnapshot.AccessPath.FULL_SCAN, snapshot.accessPath(firstByPriority),
+                        "Unselective range did not walk the order index")
+        );
+    }
+
+    @Test
+    void changeFeed_ShouldReplayMissedVersionsAndThenFollowWrites() {
+        // Given
+        repository.addTasks(List.of(task1, task2));
+        long seen = repository.getVersion();
+        repository.removeTaskById(task1.getId());
+        List<List<TaskChange>> resumed = new ArrayList<>();
+        List<List<TaskChange>> tooOld = new ArrayList<>();
+
+        // When
+        long resumedFrom = repository.changeFeed().subscribe(seen, resumed::add);
+        long tooOldFrom = repository.changeFeed().subscribe(-1, tooOld::add);
+        repository.addTasks(List.of(task1, task3));
+
+        // Then
+        assertAll("Change feed",
+                () -> assertEquals(seen, resumedFrom, "Retained version was not resumed from"),
+                () -> assertEquals(List.of(TaskChange.Type.REMOVED, TaskChange.Type.ADDED),
+                        resumed.stream().map(changes -> changes.get(0).getType()).collect(Collectors.toList()),
+                        "Missed and new versions were not delivered in order"),
+                () -> assertEquals(List.of(task1.getId(), task3.getId()),
+                        resumed.get(1).stream().map(TaskChange::getId).collect(Collectors.toList()),
+                        "Batch was not delivered as one version"),
+                () -> assertEquals(repository.getVersion(), resumed.get(1).get(1).getVersion(), "Version does not match"),
+                () -> assertEquals(seen + 1, tooOldFrom, "Expired version was not started from the current one"),
+                () -> assertEquals(1, tooOld.size(), "Expired subscriber got a replay")
+        );
+    }
+
+    @Test
+    void page_ShouldWalkEveryOrderingWithoutGapsOrDuplicates() {
+        // Given
+        Random random = new Random(11);
+        InMemoryTaskRepository paged = new InMemoryTaskRepository();
+        for (int i = 0; i < 500; i++) {
+            paged.addTask(new Task("Task " + WORDS[random.nextInt(WORDS.length)], Category.values()[random.nextInt(3)],
+                    1 + random.nextInt(5), LocalDate.now().plusDays(random.nextInt(30))));
+        }
+        TaskSnapshot snapshot = paged.snapshot();
+        TaskSnapshot scanned = TaskSnapshot.of(snapshot.getVersion(), snapshot.toList());
+
+        // When
+        List<Task> byDueDate = readAllPages(after -> snapshot.page(TaskOrder.DUE_DATE, after, 7));
+        List<Task> byPriority = readAllPages(after -> snapshot.page(TaskOrder.PRIORITY, after, 7));
+        List<Task> byUrgency = readAllPages(after -> snapshot.page(TaskOrder.URGENCY, after, 7));
+        List<Task> byCategory = readAllPages(after -> snapshot.pageByCategory(Category.OTHER, after, 7));
+        List<Task> byDescription = readAllPages(after -> snapshot.pageByDescriptionContaining("report", after, 7));
+
+        // Then
+        assertAll("Pages",
+                () -> assertEquals(readAllPages(after -> scanned.page(TaskOrder.DUE_DATE, after, 7)), byDueDate, "Due date pages are incorrect"),
+                () -> assertEquals(readAllPages(after -> scanned.page(TaskOrder.PRIORITY, after, 7)), byPriority, "Priority pages are incorrect"),
+                () -> assertEquals(readAllPages(after -> scanned.page(TaskOrder.URGENCY, after, 7)), byUrgency, "Urgency pages are incorrect"),
+                () -> assertEquals(scanned.findByCategory(Category.OTHER), byCategory, "Category pages are incorrect"),
+                () -> assertEquals(scanned.findByDescriptionContaining("report"), byDescription, "Description pages are incorrect"),
+                () -> assertThrows(InvalidCursorException.class, () -> snapshot.page(TaskOrder.DUE_DATE, "abc", 7), "Bad cursor was accepted")
+        );
+    }
+
+    @Test
+    void page_ShouldContinueAfterCursorTaskIsRemoved() {
+        // Given
+        repository.addTask(task3);
+        TaskPage first = repository.snapshot().page(TaskOrder.INSERTION, null, 1);
+
+        // When
+        repository.removeTaskById(task1.getId());
+        TaskPage second = repository.snapshot().page(TaskOrder.INSERTION, first.getNextCursor(), 1);
+
+        // Then
+        assertAll("Pages",
+                () -> assertEquals(List.of(task1), first.getTasks(), "First page is incorrect"),
+                () -> assertEquals(List.of(task2), second.getTasks(), "Second page is incorrect"),
+                () -> assertTrue(second.hasNext(), "Last page was reported too early")
+        );
+    }
+
+    @Test
+    void addTask_WhenCalledConcurrently_ShouldKeepEveryTask() throws Exception {
+        // Given
+        int threads = 8;
+        int perThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < perThread; j++) {
+                    repository.addTask(new Task("Task", Category.WORK, 1, LocalDate.now().plusDays(1)));
+                    repository.snapshot().stream().count();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // Then
+        assertEquals(2 + threads * perThread, repository.snapshot().size(), "Lost updates");
+    }
+
+    private static List<Task> readAllPages(Function<String, TaskPage> fetch) {
+        List<Task> tasks = new ArrayList<>();
+        String cursor = null;
+        do {
+            TaskPage page = fetch.apply(cursor);
+            tasks.addAll(page.getTasks());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return tasks;
+    }
+}
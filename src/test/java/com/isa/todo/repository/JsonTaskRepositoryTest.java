@@ -0,0 +1,425 @@
+package com.isa.todo.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.isa.todo.metrics.Metrics;
+import com.isa.todo.model.Category;
+import com.isa.todo.model.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonTaskRepositoryTest {
+
+    @TempDir
+    Path tempDir;
+    private ObjectMapper objectMapper;
+    private File snapshotFile;
+    Task task1 = new Task("Task 1", Category.WORK, 1, LocalDate.now().plusDays(1));
+    Task task2 = new Task("Task 2", Category.HOME, 2, LocalDate.now().plusDays(2));
+
+    @BeforeEach
+    void setUp() throws IOException {
+        objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        snapshotFile = tempDir.resolve("tasks.json").toFile();
+        Files.writeString(snapshotFile.toPath(), "[]");
+    }
+
+    @Test
+    void addTask_ShouldAppendToLogWithoutRewritingSnapshot() throws IOException {
+        // Given
+        JsonTaskRepository repository = new JsonTaskRepository(objectMapper, snapshotFile, 100);
+
+        // When
+        repository.addTask(task1);
+        repository.addTask(task2);
+        repository.removeTaskById(task1.getId());
+        repository.close();
+
+        // Then
+        List<String> log = Files.readAllLines(tempDir.resolve("tasks.json.log"));
+        assertAll("Log",
+                () -> assertEquals(3, log.size(), "Incorrect number of log records"),
+                () -> assertEquals("[]", Files.readString(snapshotFile.toPath()), "Snapshot was rewritten")
+        );
+    }
+
+    @Test
+    void getTaskById_ShouldFindTaskUntilItIsRemoved() {
+        // Given
+        JsonTaskRepository repository = new JsonTaskRepository(objectMapper, snapshotFile, 100);
+        repository.addTask(task1);
+        repository.addTask(task2);
+
+        // When
+        Task found = repository.getTaskById(task2.getId());
+        repository.removeTaskById(task2.getId());
+        Task removed = repository.getTaskById(task2.getId());
+        repository.close();
+
+        // Then
+        assertAll("Tasks",
+                () -> assertSame(task2, found, "Task 2 was not found"),
+                () -> assertNull(removed, "Task 2 was not removed"),
+                () -> assertEquals(List.of(task1), repository.getAllTasks(), "Insertion order was not kept")
+        );
+    }
+
+    @Test
+    void loadTasksFromFile_ShouldReplayLogOnTopOfSnapshot() {
+        // Given
+        JsonTaskRepository repository = new JsonTaskRepository(objectMapper, snapshotFile, 100);
+        repository.addTask(task1);
+        repository.addTask(task2);
+        repository.removeTaskById(task1.getId());
+        repository.close();
+
+        // When
+        JsonTaskRepository reloaded = new JsonTaskRepository(objectMapper, snapshotFile, 100);
+        List<Task> tasks = reloaded.getAllTasks();
+        reloaded.close();
+
+        // Then
+        assertAll("Tasks",
+                () -> assertEquals(1, tasks.size(), "Incorrect number of tasks"),
+                () -> assertEquals(task2.getId(), tasks.get(0).getId(), "Task 2 is not present")
+        );
+    }
+
+    @Test
+    void loadTasksFromFile_ShouldIgnoreTornLastRecord() throws IOException {
+        // Given
+        JsonTaskRepository repository = new JsonTaskRepository(objectMapper, snapshotFile, 100);
+        repository.addTask(task1);
+        repository.close();
+        Files.writeString(tempDir.resolve("tasks.json.log"), "{\"op\":\"ADD\",\"task\":{\"id\"",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        // When
+        JsonTaskRepository reloaded = new JsonTaskRepository(objectMapper, snapshotFile, 100);
+        List<Task> tasks = reloaded.getAllTasks();
+        reloaded.addTask(task2);
+        reloaded.close();
+        JsonTaskRepository reloadedAgain = new JsonTaskRepository(objectMapper, snapshotFile, 100);
+        List<Task> tasksAfterAdd = reloadedAgain.getAllTasks();
+        reloadedAgain.close();
+
+        // Then
+        assertAll("Tasks",
+                () -> assertEquals(1, tasks.size(), "Incorrect number of tasks after recovery"),
+                () -> assertEquals(2, tasksAfterAdd.size(), "Incorrect number of tasks after adding to recovered log")
+        );
+    }
+
+    @Test
+    void compact_ShouldFoldLogIntoSnapshot() throws IOException {
+        // Given
+        JsonTaskRepository repository = new JsonTaskRepository(objectMapper, snapshotFile, 100);
+        repository.addTask(task1);
+        repository.addTask(task2);
+
+        // When
+        repository.compact();
+        repository.close();
+
+        // Then
+        List<Task> snapshot = objectMapper.readValue(snapshotFile, objectMapper.getTypeFactory()
+                .constructCollectionType(List.class, Task.class));
+        assertAll("Snapshot",
+                () -> assertEquals(2, snapshot.size(), "Incorrect number of tasks in snapshot"),
+                () -> assertEquals(0, Files.size(tempDir.resolve("tasks.json.log")), "Log was not truncated"),
+                () -> assertFalse(Files.exists(tempDir.resolve("tasks.json.log.compacting")), "Rotated log was not removed")
+        );
+    }
+
+    @Test
+    void loadTasksFromFile_ShouldReadCompactedSnapshotRecordByRecord() {
+        // Given
+        JsonTaskRepository repository = new JsonTaskRepository(objectMapper, snapshotFile, 100);
+        for (int i = 0; i < 250; i++) {
+            repository.addTask(new Task("Task " + i, Category.values()[i % 3], 1 + i % 5, LocalDate.now().plusDays(i)));
+        }
+        List<Task> added = repository.getAllTasks();
+        repository.compact();
+        repository.close();
+
+        // When
+        JsonTaskRepository reloaded = new JsonTaskRepository(objectMapper, snapshotFile, 100);
+        List<Task> tasks = reloaded.getAllTasks();
+        reloaded.close();
+
+        // Then
+        assertAll("Tasks",
+                () -> assertEquals(250, tasks.size(), "Incorrect number of tasks"),
+                () -> assertEquals(added.get(249).getId(), tasks.get(249).getId(), "Order was not kept"),
+                () -> assertEquals(added.get(249).getDescription(), tasks.get(249).getDescription(), "Description does not match"),
+                () -> assertEquals(added.get(249).getCategory(), tasks.get(249).getCategory(), "Category does not match"),
+                () -> assertEquals(added.get(249).getPriority(), tasks.get(249).getPriority(), "Priority does not match"),
+                () -> assertEquals(added.get(249).getDueDate(), tasks.get(249).getDueDate(), "Due date does not match")
+        );
+    }
+
+    @Test
+    void binarySnapshot_ShouldImportJsonOnFirstStartAndReloadFromBinary() {
+        // Given
+        JsonTaskRepository json = new JsonTaskRepository(objectMapper, snapshotFile, 100);
+        json.addTask(task1);
+        json.addTask(task2);
+        json.close();
+        File binaryFile = JsonTaskRepository.binaryFileFor(snapshotFile);
+
+        // When
+        JsonTaskRepository imported = new JsonTaskRepository(objectMapper, binaryFile, SnapshotFormat.BINARY, 100);
+        imported.removeTaskById(task1.getId());
+        imported.close();
+        JsonTaskRepository reloaded = new JsonTaskRepository(objectMapper, binaryFile, SnapshotFormat.BINARY, 100);
+        List<Task> tasks = reloaded.getAllTasks();
+        reloaded.close();
+
+        // Then
+        assertAll("Tasks",
+                () -> assertTrue(binaryFile.exists(), "Binary snapshot was not written"),
+                () -> assertEquals(1, tasks.size(), "Incorrect number of tasks"),
+                () -> assertEquals(task2.getId(), tasks.get(0).getId(), "Task 2 is not present"),
+                () -> assertEquals(task2.getDueDate(), tasks.get(0).getDueDate(), "Due date does not match")
+        );
+    }
+
+    @Test
+    void groupCommit_ShouldShareFlushesBetweenConcurrentWriters() throws Exception {
+        // Given
+        Metrics metrics = new Metrics();
+        JsonTaskRepository repository = new JsonTaskRepository(objectMapper, metrics, snapshotFile, SnapshotFormat.JSON,
+                Durability.GROUP, 5, 10_000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> writes = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < 200; i++) {
+            Task task = new Task("Task " + i, Category.WORK, 1, LocalDate.now());
+            writes.add(executor.submit(() -> repository.addTask(task)));
+        }
+        for (Future<?> write : writes) {
+            write.get();
+        }
+        executor.shutdown();
+        List<String> log = Files.readAllLines(tempDir.resolve("tasks.json.log"));
+        long flushes = metrics.timer("repository.flush").snapshot().getCount();
+        repository.close();
+
+        // Then
+        assertAll("Group commit",
+                () -> assertEquals(200, log.size(), "Acknowledged records are missing from the log"),
+                () -> assertTrue(flushes < 200, "Every write was flushed on its own: " + flushes + " flushes")
+        );
+    }
+
+    @Test
+    void flush_WhenPeriodic_ShouldMakeEarlierWritesDurable() throws IOException {
+        // Given
+        JsonTaskRepository repository = new JsonTaskRepository(objectMapper, new Metrics(), snapshotFile,
+                SnapshotFormat.JSON, Durability.PERIODIC, 60_000, 10_000);
+        repository.addTask(task1);
+        repository.addTask(task2);
+
+        // When
+        repository.flush().join();
+        List<String> log = Files.readAllLines(tempDir.resolve("tasks.json.log"));
+        repository.close();
+
+        // Then
+        assertEquals(2, log.size(), "Flushed records are missing from the log");
+    }
+
+    @Test
+    void addTasks_ShouldWriteWholeBatchWithOneFlush() throws IOException {
+        // Given
+        Metrics metrics = new Metrics();
+        JsonTaskRepository repository = new JsonTaskRepository(objectMapper, metrics, snapshotFile, SnapshotFormat.JSON, 100);
+        long versionBefore = repository.snapshot().getVersion();
+
+        // When
+        repository.addTasks(List.of(task1, task2));
+        List<String> log = Files.readAllLines(tempDir.resolve("tasks.json.log"));
+        repository.close();
+
+        // Then
+        assertAll("Batch",
+                () -> assertEquals(2, log.size(), "Incorrect number of log records"),
+                () -> assertEquals(1, metrics.timer("repository.flush").snapshot().getCount(), "Batch was not flushed once"),
+                () -> assertEquals(versionBefore + 1, repository.snapshot().getVersion(), "Batch was not one version")
+        );
+    }
+
+    @Test
+    void addTaskAsync_ShouldCompleteOnceChangeIsInLog() throws IOException {
+        // Given
+        JsonTaskRepository repository = new JsonTaskRepository(objectMapper, new Metrics(), snapshotFile,
+                SnapshotFormat.JSON, Durability.GROUP, 5, 100);
+
+        // When
+        repository.addTaskAsync(task1).join();
+        repository.addTaskAsync(task2).thenCompose(done -> repository.removeTaskByIdAsync(task1.getId())).join();
+        List<String> log = Files.readAllLines(tempDir.resolve("tasks.json.log"));
+        repository.close();
+
+        // Then
+        assertAll("Async changes",
+                () -> assertEquals(3, log.size(), "Completed changes are missing from the log"),
+                () -> assertNull(repository.getTaskById(task1.getId()), "Task 1 was not removed"),
+                () -> assertNotNull(repository.getTaskById(task2.getId()), "Task 2 is not present")
+        );
+    }
+
+    @Test
+    void addTaskAsync_WhenQueueIsFull_ShouldFailFutureInsteadOfThrowing() {
+        // Given
+        JsonTaskRepository repository = new JsonTaskRepository(objectMapper, new Metrics(), snapshotFile,
+                SnapshotFormat.JSON, Durability.GROUP, 0, 100_000);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        // When
+        synchronized (repository) {
+            // Blocks the I/O thread on the write lock, so the queue fills up.
+            for (int i = 0; i < 10_002; i++) {
+                futures.add(repository.addTaskAsync(task1));
+            }
+        }
+        List<CompletableFuture<Void>> rejected = futures.stream().filter(CompletableFuture::isCompletedExceptionally)
+                .collect(Collectors.toList());
+        futures.removeAll(rejected);
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        repository.close();
+
+        // Then
+        assertFalse(rejected.isEmpty(), "No change was rejected");
+        CompletionException failure = assertThrows(CompletionException.class, () -> rejected.get(0).join(),
+                "Rejected change did not fail its future");
+        assertAll("Full queue",
+                () -> assertTrue(failure.getCause() instanceof ChangeQueueFullException, "Incorrect failure " + failure.getCause()),
+                () -> assertNotNull(repository.getTaskById(task1.getId()), "Accepted changes were not applied")
+        );
+    }
+
+    @Test
+    void categoryShards_ShouldOnlyLogToTheTasksShardAndReloadAllShards() throws IOException {
+        // Given
+        ShardLayout layout = ShardLayout.of(ShardKey.CATEGORY, 0);
+        JsonTaskRepository repository = new JsonTaskRepository(objectMapper, new Metrics(), snapshotFile,
+                SnapshotFormat.JSON, layout, Durability.GROUP, 0, 100);
+        Task moved = new Task(task2.getId(), "Task 2", Category.WORK, 2, task2.getDueDate());
+
+        // When
+        repository.addTask(task1);
+        repository.addTask(task2);
+        repository.addTask(moved);
+        repository.close();
+        JsonTaskRepository reloaded = new JsonTaskRepository(objectMapper, new Metrics(), snapshotFile,
+                SnapshotFormat.JSON, layout, Durability.GROUP, 0, 100);
+        reloaded.close();
+
+        // Then
+        List<String> workLog = Files.readAllLines(tempDir.resolve("tasks-work.json.log"));
+        List<String> homeLog = Files.readAllLines(tempDir.resolve("tasks-home.json.log"));
+        assertAll("Shards",
+                () -> assertEquals(2, workLog.size(), "Incorrect number of records in the work shard"),
+                () -> assertEquals(2, homeLog.size(), "Moved task was not removed from the home shard"),
+                () -> assertFalse(tempDir.resolve("tasks-personal.json.log").toFile().exists(), "Unrelated shard was written"),
+                () -> assertEquals(2, reloaded.getAllTasks().size(), "Incorrect number of reloaded tasks"),
+                () -> assertEquals(Category.WORK, reloaded.getTaskById(task2.getId()).getCategory(), "Moved task was not reloaded")
+        );
+    }
+
+    @Test
+    void hashShards_ShouldSplitSingleFileOnFirstStartAndRefuseOtherLayouts() throws IOException {
+        // Given
+        JsonTaskRepository single = new JsonTaskRepository(objectMapper, snapshotFile, 100);
+        for (int i = 0; i < 20; i++) {
+            single.addTask(new Task("Task " + i, Category.WORK, 1, task1.getDueDate()));
+        }
+        single.close();
+
+        // When
+        JsonTaskRepository sharded = new JsonTaskRepository(objectMapper, new Metrics(), snapshotFile,
+                SnapshotFormat.JSON, ShardLayout.of(ShardKey.HASH, 4), Durability.GROUP, 0, 100);
+        sharded.close();
+        JsonTaskRepository reloaded = new JsonTaskRepository(objectMapper, new Metrics(), snapshotFile,
+                SnapshotFormat.JSON, ShardLayout.of(ShardKey.HASH, 4), Durability.GROUP, 0, 100);
+        reloaded.close();
+
+        // Then
+        assertAll("Split",
+                () -> assertEquals("hash 4", Files.readString(tempDir.resolve("tasks.shards")).trim(), "Manifest was not written"),
+                () -> assertTrue(tempDir.resolve("tasks-3.json").toFile().exists(), "Shard snapshot was not written"),
+                () -> assertEquals(20, reloaded.getAllTasks().size(), "Incorrect number of reloaded tasks"),
+                () -> assertThrows(IllegalStateException.class, () -> new JsonTaskRepository(objectMapper, snapshotFile, 100),
+                        "Sharded data was read with the single-file layout")
+        );
+    }
+
+    @Test
+    void loadAndSave_WhenRecording_ShouldRecordFlightRecorderEvents() throws IOException {
+        // Given
+        JsonTaskRepository repository = new JsonTaskRepository(objectMapper, snapshotFile, 100);
+        repository.addTask(task1);
+        repository.close();
+        Path file = tempDir.resolve("tasks.jfr");
+        List<RecordedEvent> events;
+
+        // When
+        try (Recording recording = new Recording()) {
+            recording.enable("com.isa.todo.TaskLoad");
+            recording.enable("com.isa.todo.TaskSave");
+            recording.start();
+            JsonTaskRepository reloaded = new JsonTaskRepository(objectMapper, snapshotFile, 100);
+            reloaded.addTask(task2);
+            reloaded.compact();
+            reloaded.close();
+            recording.stop();
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        }
+
+        // Then
+        RecordedEvent load = events.stream().filter(event -> event.getEventType().getName().equals("com.isa.todo.TaskLoad"))
+                .findFirst().orElseThrow();
+        List<RecordedEvent> saves = events.stream().filter(event -> event.getEventType().getName().equals("com.isa.todo.TaskSave"))
+                .collect(Collectors.toList());
+        List<String> saved = saves.stream().map(event -> event.getString("kind") + ":" + event.getInt("records"))
+                .collect(Collectors.toList());
+        long snapshotBytes = saves.stream().filter(event -> event.getString("kind").equals("snapshot"))
+                .mapToLong(event -> event.getLong("bytesWritten")).findFirst().orElse(-1);
+        assertAll("Events",
+                () -> assertEquals(1, load.getInt("scanned"), "Incorrect number of scanned records"),
+                () -> assertEquals(1, load.getInt("tasks"), "Incorrect number of loaded tasks"),
+                () -> assertTrue(load.getLong("bytesRead") > 0, "No bytes read reported"),
+                () -> assertTrue(saved.contains("log:1"), "Log append not recorded: " + saved),
+                () -> assertTrue(saved.contains("snapshot:2"), "Snapshot write not recorded: " + saved),
+                () -> assertEquals(snapshotFile.length(), snapshotBytes, "Incorrect snapshot size")
+        );
+    }
+}
@@ -0,0 +1,109 @@
+package com.isa.todo.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentTreeTest {
+
+    @Test
+    void insertAndRemove_ShouldMatchTreeSet() {
+        // Given
+        Random random = new Random(42);
+        TreeSet<Integer> expected = new TreeSet<>();
+        PersistentTree<Integer> tree = PersistentTree.empty(Comparator.naturalOrder());
+
+        // When
+        for (int i = 0; i < 20_000; i++) {
+            int value = random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(value);
+                tree = tree.remove(value);
+            } else {
+                expected.add(value);
+                tree = tree.insert(value);
+            }
+        }
+
+        // Then
+        PersistentTree<Integer> result = tree;
+        List<Integer> actual = new ArrayList<>();
+        result.forEach(actual::add);
+        assertAll("Tree",
+                () -> assertEquals(expected.size(), result.size(), "Incorrect size"),
+                () -> assertEquals(new ArrayList<>(expected), actual, "Incorrect order"),
+                () -> assertEquals(expected.first(), result.first(), "Incorrect first element")
+        );
+    }
+
+    @Test
+    void insert_ShouldLeaveOriginalTreeUnchanged() {
+        // Given
+        PersistentTree<Integer> original = PersistentTree.fromSorted(Comparator.naturalOrder(), List.of(1, 2, 3));
+
+        // When
+        PersistentTree<Integer> updated = original.insert(4).remove(1);
+
+        // Then
+        assertAll("Trees",
+                () -> assertEquals(3, original.size(), "Original tree changed"),
+                () -> assertEquals(1, original.first(), "Original tree changed"),
+                () -> assertEquals(2, updated.first(), "Updated tree is incorrect")
+        );
+    }
+
+    @Test
+    void iterator_ShouldStartAtBound() {
+        // Given
+        PersistentTree<Integer> tree = PersistentTree.fromSorted(Comparator.naturalOrder(), List.of(1, 3, 5, 7));
+
+        // When
+        Iterator<Integer> inclusive = tree.iterator(element -> Integer.compare(5, element), true);
+        Iterator<Integer> exclusive = tree.iterator(element -> Integer.compare(5, element), false);
+
+        // Then
+        assertAll("Iterators",
+                () -> assertEquals(5, inclusive.next(), "Inclusive bound was skipped"),
+                () -> assertEquals(7, exclusive.next(), "Exclusive bound was returned")
+        );
+    }
+
+    @Test
+    void spliterator_ShouldSplitIntoOrderedHalves() {
+        // Given
+        PersistentTree<Integer> tree = PersistentTree.empty(Comparator.naturalOrder());
+        for (int i = 0; i < 1_000; i++) {
+            tree = tree.insert(i * 7 % 1_000);
+        }
+        PersistentTree<Integer> full = tree;
+        Spliterator<Integer> suffix = full.spliterator();
+
+        // When
+        Spliterator<Integer> prefix = suffix.trySplit();
+        List<Integer> first = new ArrayList<>();
+        prefix.forEachRemaining(first::add);
+        List<Integer> second = new ArrayList<>();
+        suffix.forEachRemaining(second::add);
+        List<Integer> parallel = StreamSupport.stream(full.spliterator(), true).collect(Collectors.toList());
+
+        // Then
+        assertAll("Spliterator",
+                () -> assertEquals(500, first.size(), "Prefix is not half of the tree"),
+                () -> assertEquals(0, first.get(0), "Prefix does not start at the first element"),
+                () -> assertEquals(500, second.get(0), "Suffix does not start after the prefix"),
+                () -> assertEquals(999, second.get(second.size() - 1), "Suffix does not end at the last element"),
+                () -> assertEquals(full.size(), parallel.size(), "Parallel stream lost elements"),
+                () -> assertEquals(first, parallel.subList(0, 500), "Parallel stream changed the order")
+        );
+    }
+}
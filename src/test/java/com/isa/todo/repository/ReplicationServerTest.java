@@ -0,0 +1,102 @@
+package com.isa.todo.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.isa.todo.metrics.Metrics;
+import com.isa.todo.model.Category;
+import com.isa.todo.model.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicationServerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final List<Runnable> cleanup = new ArrayList<>();
+    Task task1 = new Task("Task 1", Category.WORK, 1, LocalDate.now().plusDays(1));
+    Task task2 = new Task("Task 2", Category.HOME, 2, null);
+    Task task3 = new Task("Task 3", null, 3, LocalDate.now().plusDays(3));
+
+    @AfterEach
+    void tearDown() {
+        cleanup.forEach(Runnable::run);
+    }
+
+    private ReplicationServer serve(TaskRepository primary, int port) {
+        ReplicationServer server = new ReplicationServer(primary, objectMapper, new Metrics(), port, "127.0.0.1");
+        cleanup.add(server::close);
+        return server;
+    }
+
+    private ReplicationClient follow(ReplicaTaskRepository replica, int port) {
+        ReplicationClient client = new ReplicationClient(replica, objectMapper, new Metrics(), "localhost:" + port);
+        cleanup.add(client::close);
+        return client;
+    }
+
+    @Test
+    void follower_ShouldCopyTaskListAndThenFollowWrites() {
+        // Given
+        InMemoryTaskRepository primary = new InMemoryTaskRepository(List.of(task1));
+        ReplicationServer server = serve(primary, 0);
+        ReplicaTaskRepository replica = new ReplicaTaskRepository();
+        ReplicationClient client = follow(replica, server.getPort());
+        awaitUntil(() -> replica.getTaskById(task1.getId()) != null);
+
+        // When
+        primary.addTasks(List.of(task2, task3));
+        primary.removeTaskById(task1.getId());
+        awaitUntil(() -> ids(replica).equals(ids(primary)));
+
+        // Then
+        assertAll("Replica",
+                () -> assertEquals(ids(primary), ids(replica), "Replica has different tasks"),
+                () -> assertEquals(0, client.getLagVersions(), "Replica reports lag after catching up"),
+                () -> assertTrue(client.isConnected(), "Replica is not connected"),
+                () -> assertThrows(ReadOnlyReplicaException.class, () -> replica.addTask(task1), "Replica accepted a write")
+        );
+    }
+
+    @Test
+    void follower_ShouldReloadFromRestartedPrimary() {
+        // Given
+        InMemoryTaskRepository primary = new InMemoryTaskRepository(List.of(task1, task2));
+        ReplicationServer server = serve(primary, 0);
+        int port = server.getPort();
+        ReplicaTaskRepository replica = new ReplicaTaskRepository();
+        follow(replica, port);
+        awaitUntil(() -> ids(replica).equals(ids(primary)));
+
+        // When
+        server.close();
+        InMemoryTaskRepository restarted = new InMemoryTaskRepository(List.of(task3));
+        serve(restarted, port);
+        awaitUntil(() -> ids(replica).equals(ids(restarted)));
+
+        // Then
+        assertEquals(List.of(task3.getId()), ids(replica), "Replica kept tasks of the previous primary");
+    }
+
+    private static List<String> ids(TaskRepository repository) {
+        return repository.getAllTasks().stream().map(Task::getId).collect(Collectors.toList());
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Replica did not catch up in time");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.isa.todo.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.isa.todo.metrics.Metrics;
+import com.isa.todo.model.Category;
+import com.isa.todo.model.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlTaskRepositoryTest {
+
+    private static final String[] WORDS = {"Report", "Grocery shopping", "Booking tickets", "Preparing a 100% report"};
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final List<SqlTaskRepository> opened = new ArrayList<>();
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(SqlTaskRepository::close);
+    }
+
+    private SqlTaskRepository open(String url) {
+        SqlTaskRepository repository = new SqlTaskRepository(objectMapper, new Metrics(), url, null);
+        opened.add(repository);
+        return repository;
+    }
+
+    @Test
+    void queries_ShouldMatchInMemoryRepository() {
+        // Given
+        Random random = new Random(7);
+        SqlTaskRepository sql = open("jdbc:h2:mem:" + UUID.randomUUID());
+        InMemoryTaskRepository inMemory = new InMemoryTaskRepository();
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 3_000; i++) {
+            Category category = random.nextInt(5) == 0 ? null : Category.values()[random.nextInt(3)];
+            LocalDate dueDate = random.nextInt(10) == 0 ? null : LocalDate.now().plusDays(random.nextInt(60));
+            tasks.add(new Task("Task " + WORDS[random.nextInt(WORDS.length)], category, 1 + random.nextInt(5), dueDate));
+        }
+        sql.addTasks(tasks);
+        inMemory.addTasks(tasks);
+        for (int i = 0; i < 500; i++) {
+            Task replaced = tasks.get(random.nextInt(tasks.size()));
+            Task changed = new Task(replaced.getId(), "Changed", Category.HOME, 1 + random.nextInt(5), replaced.getDueDate());
+            sql.addTask(changed);
+            inMemory.addTask(changed);
+            String removed = tasks.get(random.nextInt(tasks.size())).getId();
+            sql.removeTaskById(removed);
+            inMemory.removeTaskById(removed);
+        }
+
+        // When
+        TaskSnapshot snapshot = sql.snapshot();
+        TaskSnapshot expected = inMemory.snapshot();
+        LocalDate from = LocalDate.now().plusDays(10);
+        LocalDate to = LocalDate.now().plusDays(20);
+        TaskQuery query = new TaskQuery(Category.WORK, 2, 4, from, null, "report", TaskOrder.URGENCY, 50);
+
+        // Then
+        assertAll("Queries",
+                () -> assertEquals(expected.size(), snapshot.size(), "Size is incorrect"),
+                () -> assertEquals(ids(expected.toList()), ids(snapshot.toList()), "Task list is incorrect"),
+                () -> assertEquals(ids(expected.findByCategory(Category.HOME)), ids(snapshot.findByCategory(Category.HOME)),
+                        "Category query is incorrect"),
+                () -> assertEquals(ids(expected.findByPriority(2)), ids(snapshot.findByPriority(2)), "Priority query is incorrect"),
+                () -> assertEquals(ids(expected.findByDueDateBetween(from, to)), ids(snapshot.findByDueDateBetween(from, to)),
+                        "Due date query is incorrect"),
+                () -> assertEquals(ids(expected.findByDescriptionContaining("100%")),
+                        ids(snapshot.findByDescriptionContaining("100%")), "Description query is incorrect"),
+                () -> assertEquals(ids(expected.first(TaskOrder.URGENCY, 5_000)), ids(snapshot.first(TaskOrder.URGENCY, 5_000)),
+                        "Urgency order is incorrect"),
+                () -> assertEquals(ids(expected.stream(TaskOrder.DUE_DATE).collect(Collectors.toList())),
+                        ids(snapshot.stream(TaskOrder.DUE_DATE).collect(Collectors.toList())), "Due date order is incorrect"),
+                () -> assertEquals(ids(expected.search(query)), ids(snapshot.search(query)), "Search is incorrect"),
+                () -> assertEquals(highestPriorityIds(expected), highestPriorityIds(snapshot),
+                        "Highest priority per category is incorrect")
+        );
+    }
+
+    @Test
+    void page_ShouldWalkEveryTaskOnceWithInMemoryCursors() {
+        // Given
+        SqlTaskRepository sql = open("jdbc:h2:mem:" + UUID.randomUUID());
+        InMemoryTaskRepository inMemory = new InMemoryTaskRepository();
+        for (int i = 0; i < 100; i++) {
+            Task task = new Task("Task " + i, Category.WORK, 1 + i % 3, i % 7 == 0 ? null : LocalDate.now().plusDays(i % 5));
+            sql.addTask(task);
+            inMemory.addTask(task);
+        }
+        TaskSnapshot snapshot = sql.snapshot();
+
+        // When
+        List<Task> paged = new ArrayList<>();
+        TaskPage page = snapshot.page(TaskOrder.URGENCY, null, 15);
+        paged.addAll(page.getTasks());
+        while (page.hasNext()) {
+            page = snapshot.page(TaskOrder.URGENCY, page.getNextCursor(), 15);
+            paged.addAll(page.getTasks());
+        }
+        TaskPage expectedPage = inMemory.snapshot().page(TaskOrder.URGENCY, null, 15);
+
+        // Then
+        assertAll("Pages",
+                () -> assertEquals(ids(inMemory.snapshot().first(TaskOrder.URGENCY, 100)), ids(paged), "Pages are incorrect"),
+                () -> assertEquals(expectedPage.getNextCursor(), snapshot.page(TaskOrder.URGENCY, null, 15).getNextCursor(),
+                        "Cursor format differs from the in-memory snapshot"),
+                () -> assertThrows(InvalidCursorException.class, () -> snapshot.page(TaskOrder.URGENCY, "x", 15),
+                        "Invalid cursor was accepted")
+        );
+    }
+
+    @Test
+    void snapshot_ShouldNotSeeLaterWritesAndTasksShouldSurviveReopening() {
+        // Given
+        String url = "jdbc:h2:file:" + tempDir.resolve("tasks");
+        SqlTaskRepository repository = open(url);
+        Task task1 = new Task("Task 1", Category.WORK, 1, LocalDate.now().plusDays(1));
+        Task task2 = new Task("Task 2", null, 2, null);
+        repository.addTask(task1);
+        repository.addTask(task2);
+        TaskSnapshot before = repository.snapshot();
+
+        // When
+        repository.addTask(new Task(task1.getId(), "Task 1 changed", Category.HOME, 3, null));
+        repository.removeTaskById(task2.getId());
+        List<Task> beforeTasks = before.toList();
+        repository.close();
+        opened.remove(repository);
+        SqlTaskRepository reopened = open(url);
+        Task changed = reopened.getTaskById(task1.getId());
+
+        // Then
+        assertAll("Versions",
+                () -> assertEquals(List.of("Task 1", "Task 2"), descriptions(beforeTasks), "Old snapshot changed"),
+                () -> assertEquals(List.of("Task 1 changed"), descriptions(reopened.getAllTasks()), "Reopened tasks are incorrect"),
+                () -> assertEquals(Category.HOME, changed.getCategory(), "Replaced task was not stored"),
+                () -> assertNull(changed.getDueDate(), "Missing due date was not kept"),
+                () -> assertEquals(4, reopened.getVersion(), "Version was not restored")
+        );
+    }
+
+    @Test
+    void asyncMutations_ShouldRunOffTheCallingThreadInOrder() {
+        // Given
+        SqlTaskRepository repository = open("jdbc:h2:mem:" + UUID.randomUUID());
+        Task task1 = new Task("Task 1", Category.WORK, 1, null);
+        Task task2 = new Task("Task 2", Category.HOME, 2, null);
+        List<String> writingThreads = new ArrayList<>();
+        repository.changeFeed().subscribe(repository.getVersion(),
+                changes -> writingThreads.add(Thread.currentThread().getName()));
+
+        // When
+        repository.addTaskAsync(task1);
+        repository.addTaskAsync(task2);
+        repository.removeTaskByIdAsync(task1.getId()).join();
+
+        // Then
+        assertAll("Async mutations",
+                () -> assertEquals(List.of(task2.getId()), ids(repository.getAllTasks()), "Mutations were not applied in order"),
+                () -> assertEquals(List.of("task-io", "task-io", "task-io"), writingThreads, "Mutations ran on the calling thread")
+        );
+    }
+
+    private static List<String> ids(List<Task> tasks) {
+        return tasks.stream().map(Task::getId).collect(Collectors.toList());
+    }
+
+    private static Map<Category, String> highestPriorityIds(TaskSnapshot snapshot) {
+        Map<Category, String> ids = new EnumMap<>(Category.class);
+        snapshot.findHighestPriorityPerCategory().forEach((category, task) -> ids.put(category, task.map(Task::getId).orElse(null)));
+        return ids;
+    }
+
+    private static List<String> descriptions(List<Task> tasks) {
+        return tasks.stream().map(Task::getDescription).collect(Collectors.toList());
+    }
+}
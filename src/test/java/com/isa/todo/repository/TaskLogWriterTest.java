@@ -0,0 +1,194 @@
+package com.isa.todo.repository;
+
+import com.isa.todo.metrics.Metrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskLogWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void append_WhenWriteFails_ShouldDiscardPartialBatchAndRejectLaterAppends() throws IOException {
+        // Given
+        File logFile = tempDir.resolve("tasks.json.log").toFile();
+        FailingChannel[] channel = new FailingChannel[1];
+        TaskLogWriter writer = new TaskLogWriter(logFile, tempDir.resolve("tasks.json.log.compacting").toFile(),
+                Durability.SYNC, 0, TimeUnit.MILLISECONDS, new Metrics(), path -> {
+            channel[0] = new FailingChannel(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND));
+            return channel[0];
+        });
+        writer.append(record("first"));
+
+        // When
+        channel[0].failWrites = true;
+        RuntimeException failed = assertThrows(RuntimeException.class, () -> writer.append(record("second")),
+                "Failed write was acknowledged");
+        channel[0].failWrites = false;
+        IllegalStateException rejected = assertThrows(IllegalStateException.class, () -> writer.append(record("third")),
+                "Append after a failure was accepted");
+        CompletableFuture<Void> flushed = writer.requestFlush();
+        writer.close();
+
+        // Then
+        assertAll("Log",
+                () -> assertEquals("first\n", Files.readString(logFile.toPath(), StandardCharsets.UTF_8),
+                        "Log does not end after the last durable record"),
+                () -> assertNotNull(failed.getCause(), "Failure has no cause"),
+                () -> assertNotNull(rejected.getCause(), "Rejection does not name the failure"),
+                () -> assertTrue(flushed.isCompletedExceptionally(), "Flush after a failure reported success")
+        );
+    }
+
+    @Test
+    void rotate_WhenCompactingLogIsLeftOver_ShouldAppendToItAndStartNewLog() throws IOException {
+        // Given
+        File logFile = tempDir.resolve("tasks.json.log").toFile();
+        File compactingLogFile = tempDir.resolve("tasks.json.log.compacting").toFile();
+        Files.writeString(compactingLogFile.toPath(), "first\n", StandardCharsets.UTF_8);
+        TaskLogWriter writer = new TaskLogWriter(logFile, compactingLogFile, Durability.SYNC, 0, TimeUnit.MILLISECONDS,
+                new Metrics());
+        writer.append(record("second"));
+
+        // When
+        writer.rotate();
+        writer.append(record("third"));
+        writer.close();
+
+        // Then
+        assertAll("Logs",
+                () -> assertEquals("first\nsecond\n", Files.readString(compactingLogFile.toPath(), StandardCharsets.UTF_8),
+                        "Compacting log does not hold both logs in order"),
+                () -> assertEquals("third\n", Files.readString(logFile.toPath(), StandardCharsets.UTF_8),
+                        "New log does not start after the rotation")
+        );
+    }
+
+    private static byte[] record(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes half of the buffer and then fails while {@link #failWrites} is set, like a disk filling up.
+     */
+    private static final class FailingChannel extends FileChannel {
+        private final FileChannel delegate;
+        volatile boolean failWrites;
+
+        FailingChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (failWrites) {
+                ByteBuffer half = src.duplicate();
+                half.limit(half.position() + half.remaining() / 2);
+                delegate.write(half);
+                throw new IOException("No space left on device");
+            }
+            return delegate.write(src);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            delegate.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
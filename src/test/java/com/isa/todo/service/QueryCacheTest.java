@@ -0,0 +1,111 @@
+package com.isa.todo.service;
+
+import com.isa.todo.metrics.Metrics;
+import com.isa.todo.model.Category;
+import com.isa.todo.model.Task;
+import com.isa.todo.repository.InMemoryTaskRepository;
+import com.isa.todo.repository.TaskOrder;
+import com.isa.todo.repository.TaskPage;
+import com.isa.todo.repository.TaskSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryCacheTest {
+
+    Task task1 = new Task("Task 1", Category.WORK, 1, LocalDate.now().plusDays(1));
+    Task task2 = new Task("Task 2", Category.HOME, 2, LocalDate.now().plusDays(2));
+    private InMemoryTaskRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new InMemoryTaskRepository(List.of(task1));
+    }
+
+    @Test
+    void get_ShouldServeRepeatedQueriesUntilRepositoryChanges() {
+        // Given
+        QueryCache cache = new QueryCache(new Metrics(), 10, 1 << 20);
+        List<Task> first = cache.get(repository.snapshot(), "findByCategory",
+                snapshot -> snapshot.findByCategory(Category.WORK), Category.WORK);
+
+        // When
+        List<Task> second = cache.get(repository.snapshot(), "findByCategory",
+                snapshot -> snapshot.findByCategory(Category.WORK), Category.WORK);
+        repository.addTask(new Task("Task 3", Category.WORK, 3, LocalDate.now().plusDays(3)));
+        List<Task> afterChange = cache.get(repository.snapshot(), "findByCategory",
+                snapshot -> snapshot.findByCategory(Category.WORK), Category.WORK);
+
+        // Then
+        assertAll("Cache",
+                () -> assertSame(first, second, "Repeated query was not served from the cache"),
+                () -> assertEquals(2, afterChange.size(), "Stale result was served after a change"),
+                () -> assertEquals(1, cache.getHits(), "Incorrect number of hits"),
+                () -> assertEquals(2, cache.getMisses(), "Incorrect number of misses"),
+                () -> assertThrows(UnsupportedOperationException.class, () -> first.add(task2), "Cached result is modifiable")
+        );
+    }
+
+    @Test
+    void get_ShouldEvictLeastRecentlyUsedAndSkipOlderSnapshots() {
+        // Given
+        QueryCache cache = new QueryCache(new Metrics(), 2, 1 << 20);
+        TaskSnapshot old = repository.snapshot();
+        repository.addTask(task2);
+        TaskSnapshot snapshot = repository.snapshot();
+
+        // When
+        cache.get(snapshot, "findByPriority", s -> s.findByPriority(1), 1);
+        cache.get(snapshot, "findByPriority", s -> s.findByPriority(2), 2);
+        cache.get(snapshot, "findByPriority", s -> s.findByPriority(1), 1);
+        cache.get(snapshot, "findByPriority", s -> s.findByPriority(3), 3);
+        List<Task> fromOld = cache.get(old, "findByPriority", s -> s.findByPriority(2), 2);
+        long missesBefore = cache.getMisses();
+        cache.get(snapshot, "findByPriority", s -> s.findByPriority(1), 1);
+
+        // Then
+        assertAll("Eviction",
+                () -> assertEquals(2, cache.size(), "Cache grew past its bound"),
+                () -> assertTrue(fromOld.isEmpty(), "Result of the newer snapshot was served for an older one"),
+                () -> assertEquals(missesBefore, cache.getMisses(), "Recently used entry was evicted")
+        );
+    }
+
+    @Test
+    void get_ShouldMakeListsInsideCachedMapsUnmodifiable() {
+        // Given
+        QueryCache cache = new QueryCache(new Metrics(), 10, 1 << 20);
+
+        // When
+        Map<Category, List<Task>> byCategory = cache.get(repository.snapshot(), "groupByCategory",
+                TaskSnapshot::groupByCategory);
+
+        // Then
+        assertAll("Cached map",
+                () -> assertEquals(List.of(task1), byCategory.get(Category.WORK), "Grouped tasks changed"),
+                () -> assertThrows(UnsupportedOperationException.class, () -> byCategory.get(Category.WORK).add(task2),
+                        "List inside a cached map is modifiable")
+        );
+    }
+
+    @Test
+    void get_ShouldMakeTasksOfCachedPagesUnmodifiable() {
+        // Given
+        QueryCache cache = new QueryCache(new Metrics(), 10, 1 << 20);
+
+        // When
+        TaskPage page = cache.get(repository.snapshot(), "page", snapshot -> snapshot.page(TaskOrder.DUE_DATE, null, 10));
+
+        // Then
+        assertAll("Cached page",
+                () -> assertEquals(List.of(task1), page.getTasks(), "Paged tasks changed"),
+                () -> assertThrows(UnsupportedOperationException.class, () -> page.getTasks().add(task2),
+                        "Tasks of a cached page are modifiable")
+        );
+    }
+}
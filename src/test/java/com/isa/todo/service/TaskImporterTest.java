@@ -0,0 +1,88 @@
+package com.isa.todo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.isa.todo.metrics.Metrics;
+import com.isa.todo.model.Task;
+import com.isa.todo.repository.InMemoryTaskRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskImporterTest {
+
+    private final String tomorrow = LocalDate.now().plusDays(1).toString();
+    private InMemoryTaskRepository repository;
+    private TaskImporter importer;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        repository = new InMemoryTaskRepository();
+        importer = new TaskImporter(repository, objectMapper,
+                Validation.buildDefaultValidatorFactory().getValidator(), new Metrics());
+    }
+
+    @Test
+    void importTasks_WhenNdjson_ShouldAddValidRecordsAndReportInvalidOnes() {
+        // Given
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < TaskImporter.BATCH_SIZE + 10; i++) {
+            body.append("{\"description\":\"Task ").append(i).append("\",\"category\":\"WORK\",\"priority\":1,")
+                    .append("\"dueDate\":\"").append(tomorrow).append("\"}\n");
+        }
+        body.append("{\"description\":\"\",\"priority\":1,\"dueDate\":\"").append(tomorrow).append("\"}\n");
+        body.append("{\"description\":\"Task\",\"priority\":\"high\",\"dueDate\":\"").append(tomorrow).append("\"}\n");
+
+        // When
+        TaskImportResult result = importer.importTasks(stream(body.toString()));
+
+        // Then
+        List<TaskImportResult.RecordError> errors = result.getErrors();
+        assertAll("Import",
+                () -> assertEquals(TaskImporter.BATCH_SIZE + 10, result.getImported(), "Incorrect number of imported tasks"),
+                () -> assertEquals(TaskImporter.BATCH_SIZE + 10, repository.snapshot().size(), "Tasks were not added"),
+                () -> assertEquals(2, result.getRejected(), "Incorrect number of rejected records"),
+                () -> assertEquals(TaskImporter.BATCH_SIZE + 11, errors.get(0).getRecord(), "Invalid record is not reported"),
+                () -> assertTrue(errors.get(0).getMessage().contains("description"), "Validation error is not reported"),
+                () -> assertEquals(TaskImporter.BATCH_SIZE + 12, errors.get(1).getRecord(), "Unreadable record is not reported")
+        );
+    }
+
+    @Test
+    void importTasks_WhenJsonArray_ShouldKeepIdsAndStopAtMalformedJson() {
+        // Given
+        String id = "0b0d7a4e-7f0e-4f1a-9a57-6f7e8c1d2e3f";
+        String body = "[{\"id\":\"" + id + "\",\"description\":\"Task 1\",\"priority\":2,\"dueDate\":\"" + tomorrow + "\"},"
+                + "{\"id\":\"not-a-uuid\",\"description\":\"Task 2\",\"priority\":2,\"dueDate\":\"" + tomorrow + "\"},"
+                + "{\"description\": ";
+
+        // When
+        TaskImportResult result = importer.importTasks(stream(body));
+
+        // Then
+        Task imported = repository.getTaskById(id);
+        assertAll("Import",
+                () -> assertEquals(1, result.getImported(), "Incorrect number of imported tasks"),
+                () -> assertEquals(2, result.getRejected(), "Incorrect number of rejected records"),
+                () -> assertNotNull(imported, "Task id was not kept"),
+                () -> assertEquals(2, imported.getPriority(), "Priority does not match"),
+                () -> assertTrue(result.getErrors().get(1).getMessage().startsWith("Malformed JSON"),
+                        "Malformed JSON is not reported")
+        );
+    }
+
+    private static ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
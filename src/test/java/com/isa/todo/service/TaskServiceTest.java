@@ -1,15 +1,23 @@
 package com.isa.todo.service;
 
+import com.isa.todo.metrics.Metrics;
 import com.isa.todo.model.Category;
 import com.isa.todo.model.Task;
 import com.isa.todo.repository.TaskRepository;
+import com.isa.todo.repository.TaskSnapshot;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.*;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -41,11 +49,16 @@ class TaskServiceTest {
     @BeforeEach
     void setUp() {
         taskRepository = mock(TaskRepository.class);
-        taskService = new TaskService(taskRepository);
-        when(taskRepository.getAllTasks()).thenReturn(Arrays.asList(task1, task2, task3, task4));
+        taskService = new TaskService(taskRepository, new Metrics());
+        givenTasks(Arrays.asList(task1, task2, task3, task4));
 
     }
 
+    private void givenTasks(List<Task> tasks) {
+        when(taskRepository.getAllTasks()).thenReturn(tasks);
+        when(taskRepository.snapshot()).thenReturn(TaskSnapshot.of(1, tasks));
+    }
+
     @AfterEach
     void afterEach() {
 
@@ -100,7 +113,7 @@ class TaskServiceTest {
     @Test
     void getAllTasks_WhenNoTasksExist_ShouldReturnEmptyList() {
         // Given
-        when(taskRepository.getAllTasks()).thenReturn(Arrays.asList());
+        givenTasks(Arrays.asList());
         totalTests++;
         // When
         List<Task> tasks = taskService.getAllTasks();
@@ -131,7 +144,7 @@ class TaskServiceTest {
     @Test
     void getTaskById_WhenTaskDoesNotExist_ShouldReturnNull() {
         // Given
-        when(taskRepository.getAllTasks()).thenReturn(Arrays.asList(task1, task2));
+        givenTasks(Arrays.asList(task1, task2));
         totalTests++;
         // When
         Task result = taskService.getTaskById("nonexistent_id");
@@ -164,7 +177,7 @@ class TaskServiceTest {
     void findTasksWithPriority1_WhenNoTasksWithPriority1_ShouldReturnEmptyList() {
         // Given
         totalTests++;
-        when(taskRepository.getAllTasks()).thenReturn(Arrays.asList(task2, task3));
+        givenTasks(Arrays.asList(task2, task3));
 
         // When
         List<Task> tasks = taskService.findTasksWithPriority1();
@@ -195,7 +208,7 @@ class TaskServiceTest {
     @Test
     void findTasksForNextDay_WhenNoTasksExist_ShouldReturnEmptyList() {
         // Given
-        when(taskRepository.getAllTasks()).thenReturn(Collections.emptyList());
+        givenTasks(Collections.emptyList());
         totalTests++;
         // When
         List<Task> tasks = taskService.findTasksForNextDay();
@@ -229,7 +242,7 @@ class TaskServiceTest {
     @Test
     void sortTasksByPriorityDescending_WhenNoTasksExist_ShouldReturnEmptyList() {
         // Given
-        when(taskRepository.getAllTasks()).thenReturn(Collections.emptyList());
+        givenTasks(Collections.emptyList());
         totalTests++;
         // When
         List<Task> tasks = taskService.sortTasksByPriorityDescending();
@@ -261,7 +274,7 @@ class TaskServiceTest {
     @Test
     void sortTasksByDate_WhenNoTasksExist_ShouldReturnEmptyList() {
         // Given
-        when(taskRepository.getAllTasks()).thenReturn(Collections.emptyList());
+        givenTasks(Collections.emptyList());
         totalTests++;
         // When
         List<Task> tasks = taskService.sortTasksByDate();
@@ -311,7 +324,7 @@ class TaskServiceTest {
     @Test
     void findTasksByCategory_WhenNoTasksExistForCategory_ShouldReturnEmptyList() {
         // Given
-        when(taskRepository.getAllTasks()).thenReturn(Collections.emptyList());
+        givenTasks(Collections.emptyList());
         totalTests++;
         // When
         List<Task> tasks = taskService.findTasksByCategory(Category.HOME);
@@ -374,7 +387,7 @@ class TaskServiceTest {
     @Test
     void findMostUrgentTask_WhenNoTasksExist_ShouldReturnEmptyOptional() {
         // Given
-        when(taskRepository.getAllTasks()).thenReturn(Collections.emptyList());
+        givenTasks(Collections.emptyList());
         totalTests++;
         // When
         Optional<Task> mostUrgentTask = taskService.findMostUrgentTask();
@@ -411,7 +424,7 @@ class TaskServiceTest {
     @Test
     void divideTasksByCategory_WhenNoTasksExist_ShouldReturnEmptyMap() {
         // Given
-        when(taskRepository.getAllTasks()).thenReturn(Collections.emptyList());
+        givenTasks(Collections.emptyList());
         totalTests++;
         // When
         Map<Category, List<Task>> dividedTasks = taskService.divideTasksByCategory();
@@ -449,7 +462,7 @@ class TaskServiceTest {
     @Test
     void divideTasksByPriority_WhenNoTasksExist_ShouldReturnEmptyMap() {
         // Given
-        when(taskRepository.getAllTasks()).thenReturn(Collections.emptyList());
+        givenTasks(Collections.emptyList());
         totalTests++;
         // When
         Map<Integer, List<Task>> dividedTasks = taskService.divideTasksByPriority();
@@ -487,7 +500,7 @@ class TaskServiceTest {
     @Test
     void findHighestPriorityTaskForEachCategory_WhenNoTasksExist_ShouldReturnEmptyMap() {
         // Given
-        when(taskRepository.getAllTasks()).thenReturn(Collections.emptyList());
+        givenTasks(Collections.emptyList());
         totalTests++;
         // When
         Map<Category, Optional<Task>> highestPriorityTasks = taskService.findHighestPriorityTaskForEachCategory();
@@ -500,5 +513,37 @@ class TaskServiceTest {
         successfulTests++;
 
     }
-}
 
+    @Test
+    void findTasksWithPriority1_WhenRecording_ShouldRecordQueryEvent() throws IOException {
+        // Given
+        totalTests++;
+        Path file = Files.createTempFile("task-query", ".jfr");
+        List<RecordedEvent> events;
+
+        // When
+        try (Recording recording = new Recording()) {
+            recording.enable("com.isa.todo.TaskQuery");
+            recording.start();
+            taskService.findTasksWithPriority1();
+            recording.stop();
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        // Then
+        assertEquals(1, events.size(), "Incorrect number of query events");
+        RecordedEvent event = events.get(0);
+        assertAll("Query event",
+                () -> assertEquals("findTasksWithPriority1", event.getString("query"), "Incorrect query name"),
+                () -> assertFalse(event.getBoolean("cached"), "Query reported as cached"),
+                () -> assertEquals(4, event.getInt("snapshotSize"), "Incorrect snapshot size"),
+                () -> assertEquals(2, event.getInt("results"), "Incorrect result size")
+        );
+        name = "findTasksWithPriority1_WhenRecording_ShouldRecordQueryEvent";
+
+        successfulTests++;
+    }
+}